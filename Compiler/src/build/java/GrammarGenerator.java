@@ -0,0 +1,391 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Build-time generator of the LL(1) parse tables in {@code compiler.ParseTables}.
+ * Run by Maven during generate-sources as a single-file program:
+ * {@code java GrammarGenerator.java <grammar> <output .java file>}.
+ *
+ * <p>A grammar is a list of rules {@code name = alternative | ... ;}, where
+ * an alternative is a sequence of symbols: upper-case keywords, quoted
+ * single-character tokens, {@code id}, lower-case nonterminals, external
+ * symbols declared with {@code %external name : first-terminals} and actions
+ * {@code #KIND}. The first rule is the start symbol and is followed by the end
+ * of the line. Fails with a message on undefined symbols and LL(1) conflicts,
+ * so a bad grammar fails the build.
+ */
+public final class GrammarGenerator {
+
+    private static final String ID = "id";
+    private static final String EOF = "$";
+    private static final String OTHER = "?";
+
+    private final List<String> terminals = new ArrayList<>();
+    private final List<String> nonterminals = new ArrayList<>();
+    private final Map<String, List<String>> externals = new LinkedHashMap<>();
+    private final List<String> actions = new ArrayList<>();
+    private final List<String> lefts = new ArrayList<>();
+    private final List<List<String>> rights = new ArrayList<>();
+
+    private BitSet[] first;
+    private BitSet[] follow;
+    private boolean[] nullable;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: java GrammarGenerator.java <grammar> <output>");
+            System.exit(2);
+        }
+        Path grammar = Path.of(args[0]);
+        GrammarGenerator generator = new GrammarGenerator();
+        try {
+            generator.parse(Files.readString(grammar, StandardCharsets.UTF_8));
+            generator.analyze();
+            int[] table = generator.table();
+            String source = generator.emit(grammar.getFileName().toString(), table);
+            Path output = Path.of(args[1]);
+            Files.createDirectories(output.getParent());
+            if (!Files.exists(output) || !Files.readString(output, StandardCharsets.UTF_8).equals(source)) {
+                Files.writeString(output, source, StandardCharsets.UTF_8);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(grammar + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private void parse(String text) {
+        List<String> words = tokenize(text);
+        int i = 0;
+        while (i < words.size()) {
+            String word = words.get(i++);
+            if (word.equals("%external")) {
+                String name = words.get(i++);
+                expect(words, i++, ":");
+                List<String> starts = new ArrayList<>();
+                while (!words.get(i).equals("\n")) {
+                    starts.add(words.get(i++));
+                }
+                externals.put(name, starts);
+                continue;
+            }
+            if (word.equals("\n")) {
+                continue;
+            }
+            if (!isNonterminal(word)) {
+                throw new IllegalArgumentException("expected a rule name but found " + word);
+            }
+            nonterminals.add(word);
+            expect(words, skipNewlines(words, i), "=");
+            i = skipNewlines(words, i) + 1;
+            List<String> alternative = new ArrayList<>();
+            while (true) {
+                String symbol = words.get(i++);
+                if (symbol.equals("\n")) {
+                    continue;
+                }
+                if (symbol.equals("|") || symbol.equals(";")) {
+                    lefts.add(word);
+                    rights.add(alternative);
+                    alternative = new ArrayList<>();
+                    if (symbol.equals(";")) {
+                        break;
+                    }
+                } else {
+                    alternative.add(symbol);
+                }
+            }
+        }
+        if (nonterminals.isEmpty()) {
+            throw new IllegalArgumentException("no rules");
+        }
+        for (List<String> alternative : rights) {
+            for (String symbol : alternative) {
+                if (symbol.startsWith("#")) {
+                    if (!actions.contains(symbol)) {
+                        actions.add(symbol);
+                    }
+                } else if (isTerminal(symbol)) {
+                    addTerminal(symbol);
+                } else if (!nonterminals.contains(symbol) && !externals.containsKey(symbol)) {
+                    throw new IllegalArgumentException("undefined symbol " + symbol);
+                }
+            }
+        }
+        for (List<String> starts : externals.values()) {
+            for (String symbol : starts) {
+                addTerminal(symbol);
+            }
+        }
+        terminals.add(EOF);
+        terminals.add(OTHER);
+    }
+
+    /** Splits the grammar into symbols, keeping line ends as "\n" and dropping comments. */
+    private static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                words.add("\n");
+                i++;
+            } else if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '#' && (i + 1 == text.length() || !Character.isLetter(text.charAt(i + 1)))) {
+                while (i < text.length() && text.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (c == '\'') {
+                int end = text.indexOf('\'', i + 1);
+                if (end != i + 2) {
+                    throw new IllegalArgumentException("quoted tokens are single characters: " + text.substring(i));
+                }
+                words.add(text.substring(i, end + 1));
+                i = end + 1;
+            } else if (c == '=' || c == '|' || c == ';' || c == ':') {
+                words.add(String.valueOf(c));
+                i++;
+            } else {
+                int start = i;
+                while (i < text.length() && !Character.isWhitespace(text.charAt(i)) && "=|;:'".indexOf(text.charAt(i)) < 0) {
+                    i++;
+                }
+                words.add(text.substring(start, i));
+            }
+        }
+        words.add("\n");
+        return words;
+    }
+
+    private static int skipNewlines(List<String> words, int i) {
+        while (words.get(i).equals("\n")) {
+            i++;
+        }
+        return i;
+    }
+
+    private static void expect(List<String> words, int i, String expected) {
+        if (!words.get(i).equals(expected)) {
+            throw new IllegalArgumentException("expected " + expected + " but found " + words.get(i));
+        }
+    }
+
+    private void addTerminal(String symbol) {
+        if (!terminals.contains(symbol)) {
+            terminals.add(symbol);
+        }
+    }
+
+    private static boolean isTerminal(String symbol) {
+        return symbol.equals(ID) || symbol.startsWith("'") || Character.isUpperCase(symbol.charAt(0));
+    }
+
+    private static boolean isNonterminal(String symbol) {
+        return Character.isLowerCase(symbol.charAt(0)) && !symbol.equals(ID);
+    }
+
+    /** Nullable, FIRST and FOLLOW sets over terminal indexes, iterated to a fixed point. */
+    private void analyze() {
+        int n = nonterminals.size();
+        first = new BitSet[n];
+        follow = new BitSet[n];
+        nullable = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            first[i] = new BitSet();
+            follow[i] = new BitSet();
+        }
+        follow[0].set(terminals.indexOf(EOF));
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int p = 0; p < rights.size(); p++) {
+                int left = nonterminals.indexOf(lefts.get(p));
+                List<String> right = rights.get(p);
+                BitSet start = new BitSet();
+                boolean empty = firstOf(right, 0, start);
+                changed |= addAll(first[left], start);
+                if (empty && !nullable[left]) {
+                    nullable[left] = true;
+                    changed = true;
+                }
+                for (int i = 0; i < right.size(); i++) {
+                    int symbol = nonterminals.indexOf(right.get(i));
+                    if (symbol < 0) {
+                        continue;
+                    }
+                    BitSet rest = new BitSet();
+                    if (firstOf(right, i + 1, rest)) {
+                        rest.or(follow[left]);
+                    }
+                    changed |= addAll(follow[symbol], rest);
+                }
+            }
+        }
+    }
+
+    /** Adds FIRST of {@code symbols[from..]} to {@code into} and returns whether it can be empty. */
+    private boolean firstOf(List<String> symbols, int from, BitSet into) {
+        for (int i = from; i < symbols.size(); i++) {
+            String symbol = symbols.get(i);
+            if (symbol.startsWith("#")) {
+                continue;
+            }
+            if (isTerminal(symbol)) {
+                into.set(terminals.indexOf(symbol));
+                return false;
+            }
+            if (externals.containsKey(symbol)) {
+                for (String start : externals.get(symbol)) {
+                    into.set(terminals.indexOf(start));
+                }
+                return false;
+            }
+            int nonterminal = nonterminals.indexOf(symbol);
+            into.or(first[nonterminal]);
+            if (!nullable[nonterminal]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean addAll(BitSet target, BitSet bits) {
+        int before = target.cardinality();
+        target.or(bits);
+        return target.cardinality() != before;
+    }
+
+    private int[] table() {
+        int width = terminals.size();
+        int[] table = new int[nonterminals.size() * width];
+        Arrays.fill(table, -1);
+        for (int p = 0; p < rights.size(); p++) {
+            int left = nonterminals.indexOf(lefts.get(p));
+            BitSet predict = new BitSet();
+            if (firstOf(rights.get(p), 0, predict)) {
+                predict.or(follow[left]);
+            }
+            for (int t = predict.nextSetBit(0); t >= 0; t = predict.nextSetBit(t + 1)) {
+                int slot = left * width + t;
+                if (table[slot] >= 0) {
+                    throw new IllegalArgumentException("LL(1) conflict in " + lefts.get(p) + " on "
+                            + terminals.get(t) + " between " + rights.get(table[slot]) + " and " + rights.get(p));
+                }
+                table[slot] = p;
+            }
+        }
+        return table;
+    }
+
+    private int symbolId(String symbol) {
+        if (symbol.startsWith("#")) {
+            return terminals.size() + nonterminals.size() + externals.size() + actions.indexOf(symbol);
+        }
+        if (isTerminal(symbol)) {
+            return terminals.indexOf(symbol);
+        }
+        if (externals.containsKey(symbol)) {
+            return terminals.size() + nonterminals.size() + new ArrayList<>(externals.keySet()).indexOf(symbol);
+        }
+        return terminals.size() + nonterminals.indexOf(symbol);
+    }
+
+    private String emit(String grammarName, int[] table) {
+        int externalBase = terminals.size() + nonterminals.size();
+        StringBuilder sb = new StringBuilder();
+        sb.append("package compiler;\n\n");
+        sb.append("/**\n * LL(1) parse tables for {@code ").append(grammarName)
+                .append("}, generated by GrammarGenerator. Do not edit.\n");
+        sb.append(" * Symbols are numbered terminals first, then nonterminals, external\n");
+        sb.append(" * symbols and actions.\n */\n");
+        sb.append("final class ParseTables {\n\n");
+        sb.append("    static final int TERMINALS = ").append(terminals.size()).append(";\n");
+        sb.append("    static final int EXTERNALS = ").append(externalBase).append(";\n");
+        sb.append("    static final int ACTIONS = ").append(externalBase + externals.size()).append(";\n\n");
+        sb.append("    static final int START = ").append(terminals.size()).append(";\n");
+        sb.append("    static final int ID = ").append(terminals.indexOf(ID)).append(";\n");
+        sb.append("    static final int EOF = ").append(terminals.indexOf(EOF)).append(";\n");
+        sb.append("    static final int OTHER = ").append(terminals.indexOf(OTHER)).append(";\n");
+        for (String external : externals.keySet()) {
+            sb.append("    static final int ").append(external.toUpperCase()).append(" = ")
+                    .append(symbolId(external)).append(";\n");
+        }
+
+        sb.append("\n    /** Terminal names for error messages. */\n");
+        sb.append("    static final String[] TERMINAL_NAMES = {");
+        for (int t = 0; t < terminals.size(); t++) {
+            String terminal = terminals.get(t);
+            String name = terminal.equals(ID) ? "identifier" : terminal.equals(EOF) ? "end of line"
+                    : terminal.equals(OTHER) ? "token" : terminal;
+            sb.append(t > 0 ? ", " : "").append('"').append(name).append('"');
+        }
+        sb.append("};\n\n");
+
+        sb.append("    /** AstArena node kind each action builds. */\n");
+        sb.append("    static final int[] ACTION_KINDS = {");
+        for (int a = 0; a < actions.size(); a++) {
+            sb.append(a > 0 ? ", " : "").append("AstArena.").append(actions.get(a).substring(1));
+        }
+        sb.append("};\n\n");
+
+        List<Integer> rhs = new ArrayList<>();
+        int[] rhsStart = new int[rights.size() + 1];
+        for (int p = 0; p < rights.size(); p++) {
+            rhsStart[p] = rhs.size();
+            List<String> right = rights.get(p);
+            for (int i = right.size() - 1; i >= 0; i--) {
+                rhs.add(symbolId(right.get(i)));
+            }
+        }
+        rhsStart[rights.size()] = rhs.size();
+        sb.append("    /** Right-hand sides of the productions, each reversed so it is pushed in order. */\n");
+        appendArray(sb, "RHS", rhs.stream().mapToInt(Integer::intValue).toArray(), 0);
+        appendArray(sb, "RHS_START", rhsStart, 0);
+        sb.append("    /** Production for {@code (nonterminal - TERMINALS) * TERMINALS + terminal}, or -1. */\n");
+        appendArray(sb, "TABLE", table, terminals.size());
+
+        sb.append("    static int keywordTerminal(int keyword) {\n        switch (keyword) {\n");
+        for (int t = 0; t < terminals.size(); t++) {
+            String terminal = terminals.get(t);
+            if (Character.isUpperCase(terminal.charAt(0))) {
+                sb.append("            case Compiler.").append(terminal).append(":\n                return ")
+                        .append(t).append(";\n");
+            }
+        }
+        sb.append("            default:\n                return OTHER;\n        }\n    }\n\n");
+        sb.append("    static int charTerminal(int c) {\n        switch (c) {\n");
+        for (int t = 0; t < terminals.size(); t++) {
+            String terminal = terminals.get(t);
+            if (terminal.startsWith("'")) {
+                sb.append("            case ").append(terminal).append(":\n                return ")
+                        .append(t).append(";\n");
+            }
+        }
+        sb.append("            default:\n                return OTHER;\n        }\n    }\n\n");
+        sb.append("    private ParseTables() {\n    }\n}\n");
+        return sb.toString();
+    }
+
+    /** Appends an int array constant, in rows of {@code width} values if width is positive. */
+    private static void appendArray(StringBuilder sb, String name, int[] values, int width) {
+        sb.append("    static final int[] ").append(name).append(" = {");
+        for (int i = 0; i < values.length; i++) {
+            if (width > 0 && i % width == 0) {
+                sb.append(i > 0 ? ",\n        " : "\n        ");
+            } else if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(values[i]);
+        }
+        sb.append(width > 0 ? "\n    };\n\n" : "};\n\n");
+    }
+}
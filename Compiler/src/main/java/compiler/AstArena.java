@@ -0,0 +1,82 @@
+package compiler;
+
+import java.util.Arrays;
+
+/**
+ * Flat syntax tree storage. A node is an index into parallel int arrays
+ * holding its kind, children, value (symbol id for identifiers, operator
+ * character for binary nodes) and source offset. Statement roots are
+ * {@link #DECLARATION} (value 1 if it starts with BEGIN), {@link #INPUT} and
+ * {@link #WRITE} with a {@link #LIST} chain on the left, {@link #END}, and
+ * {@link #LET} or {@link #ASSIGN} with the target on the left and the
+ * expression on the right. The arena belongs to a
+ * {@link Compiler} and is {@link #reset() reset} rather than reallocated
+ * between compilations, so building trees creates no per-node objects.
+ */
+final class AstArena {
+
+    static final int NONE = -1;
+
+    static final int IDENTIFIER = 0;
+    static final int BINARY = 1;
+    static final int ASSIGN = 2;
+    static final int LET = 3;
+    static final int DECLARATION = 4;
+    static final int INPUT = 5;
+    static final int WRITE = 6;
+    static final int END = 7;
+    /** Identifier list cell: the item on the left, the rest of the list on the right. */
+    static final int LIST = 8;
+
+    static final int KINDS = 9;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private int[] kinds = new int[INITIAL_CAPACITY];
+    private int[] lefts = new int[INITIAL_CAPACITY];
+    private int[] rights = new int[INITIAL_CAPACITY];
+    private int[] values = new int[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int size;
+
+    void reset() {
+        size = 0;
+    }
+
+    int add(int kind, int value, int start, int left, int right) {
+        if (size == kinds.length) {
+            int capacity = size * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            lefts = Arrays.copyOf(lefts, capacity);
+            rights = Arrays.copyOf(rights, capacity);
+            values = Arrays.copyOf(values, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+        }
+        kinds[size] = kind;
+        values[size] = value;
+        starts[size] = start;
+        lefts[size] = left;
+        rights[size] = right;
+        return size++;
+    }
+
+    int kind(int node) {
+        return kinds[node];
+    }
+
+    int left(int node) {
+        return lefts[node];
+    }
+
+    int right(int node) {
+        return rights[node];
+    }
+
+    int value(int node) {
+        return values[node];
+    }
+
+    int start(int node) {
+        return starts[node];
+    }
+}
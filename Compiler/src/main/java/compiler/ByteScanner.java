@@ -0,0 +1,37 @@
+package compiler;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bulk byte scanning used to split source into lines and to find token
+ * boundaries before the lexer runs. {@link #create()} returns the Vector API
+ * implementation when {@code jdk.incubator.vector} is in the boot layer and a
+ * scalar one otherwise; both produce identical results.
+ */
+interface ByteScanner {
+
+    /** Start offsets of the lines in {@code source[from, to)}; a trailing newline does not open a new line. */
+    int[] lineStarts(ByteBuffer source, int from, int to);
+
+    int countNewlines(ByteBuffer source, int from, int to);
+
+    /**
+     * Sets bit {@code i} of {@code spaces} for every whitespace byte at
+     * {@code from + i}, and of {@code breaks} for every whitespace or
+     * single-character token byte. Both arrays must hold at least
+     * {@code (to - from + 63) / 64} words; they are overwritten.
+     */
+    void delimiters(ByteBuffer source, int from, int to, long[] spaces, long[] breaks);
+
+    static ByteScanner create() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (ByteScanner) Class.forName("compiler.VectorByteScanner")
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // fall through to the scalar scanner
+            }
+        }
+        return new ScalarByteScanner();
+    }
+}
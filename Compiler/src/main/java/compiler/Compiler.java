@@ -1,16 +1,171 @@
 package compiler;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
 
 public class Compiler {
 
     private static final String[] KEYWORDS = {"BEGIN", "INTEGER", "LET", "INPUT", "WRITE", "END"};
-    private static final String[] OPERATORS = {"+", "-", "/", "*"};
-    private static final String[] SYMBOLS = {"="};
-    private static final String IDENTIFIER_REGEX = "[a-zA-Z]";
+    static final int BEGIN = 0;
+    static final int INTEGER = 1;
+    static final int LET = 2;
+    static final int INPUT = 3;
+    static final int WRITE = 4;
+    static final int END = 5;
+    private static final KeywordTable KEYWORD_TABLE = new KeywordTable(KEYWORDS);
+    private static final KeywordSpeller SPELLER = new KeywordSpeller(KEYWORDS);
+    private static final ByteScanner SCANNER = ByteScanner.create();
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final int MIN_CHUNK_SIZE = 16 * 1024;
+    /**
+     * Bytes of output buffered across all chunks in flight in parallel mode,
+     * assuming {@link #OUTPUT_PER_SOURCE_BYTE} output bytes per source byte.
+     */
+    private static final int PARALLEL_OUTPUT_BUDGET = 64 * 1024 * 1024;
+    /** Output bytes per source byte that chunks are sized for; typical programs print about 17. */
+    private static final int OUTPUT_PER_SOURCE_BYTE = 32;
+    private static final int DEFAULT_LEVEL = 2;
+    private static final String USAGE = "usage: Compiler [-O0|-O1|-O2] [--passes=ssa,lvn,dse] [--time-passes]"
+            + " [--stream|--parallel] [FILE|-]...";
+    /** Statements and held output bytes after which the dead-store window is resolved early. */
+    private static final int DEAD_STORE_WINDOW = 4096;
+    private static final int DEAD_STORE_WINDOW_BYTES = 1024 * 1024;
+    /** Source bytes whose delimiter bitmaps are built at once, so the vector scanner runs over many lines. */
+    private static final int DELIMITER_BLOCK = 64 * 1024;
+
+    private final PrintStream out;
+    private final HeldOutput output;
+    private final SymbolInterner symbols;
+    private final TokenStream tokens = new TokenStream();
+    private final Diagnostics diagnostics = new Diagnostics();
+    private final AstArena ast = new AstArena();
+    private final Parser parser = new Parser(tokens, ast, diagnostics);
+    private int statement = AstArena.NONE;
+    private LineIndex lineIndex;
+    /** Delimiter bitmaps of {@code delimiterSource[delimiterStart, delimiterEnd)}, shared by the lines in it. */
+    private long[] spaces = new long[16];
+    private long[] breaks = new long[16];
+    private ByteBuffer delimiterSource;
+    private int delimiterStart;
+    private int delimiterEnd;
+    private final SymbolTable symbolTable = new SymbolTable();
+    private int[] identifiers = new int[16];
+    private int[] identifierStarts = new int[16];
+    private int identifierCount;
+    private final StatementPhase[] analysers = new StatementPhase[AstArena.KINDS];
+    private final StatementPhase[] lowerings = new StatementPhase[AstArena.KINDS];
+    private final ThreeAddressCode ir = new ThreeAddressCode();
+    private final PassManager passes = new PassManager();
+    private final DeadStoreElimination deadStores = new DeadStoreElimination();
+    private boolean holdDeadStores;
+    /** Output of a parallel chunk, whose optimizing back end is run later, in program order. */
+    private ChunkOutput deferredOutput;
+    private int[] deferredOffsets = new int[16];
+    private int[] deferredStarts = new int[16];
+    private int[] deferredLines = new int[16];
+    private int deferredCount;
+
+    Compiler(PrintStream out) {
+        this(out, new SymbolInterner());
+    }
+
+    Compiler(PrintStream out, SymbolInterner symbols) {
+        this.output = new HeldOutput(out, DEAD_STORE_WINDOW_BYTES, this::releaseHeldOutput);
+        this.out = new PrintStream(output);
+        this.symbols = symbols;
+        analysers[AstArena.DECLARATION] = this::analyseStatement;
+        analysers[AstArena.INPUT] = this::analyseStatement;
+        analysers[AstArena.LET] = this::analyseAssignment;
+        analysers[AstArena.ASSIGN] = this::analyseAssignment;
+        analysers[AstArena.WRITE] = this::analyseWrite;
+        analysers[AstArena.END] = this::analyseStatement;
+        lowerings[AstArena.DECLARATION] = this::lowerNothing;
+        lowerings[AstArena.INPUT] = this::lowerInput;
+        lowerings[AstArena.LET] = this::lowerAssignment;
+        lowerings[AstArena.ASSIGN] = this::lowerAssignment;
+        lowerings[AstArena.WRITE] = this::lowerWrite;
+        lowerings[AstArena.END] = this::lowerNothing;
+        passes.register("ssa", 0, PassManager.SSA, new SsaBuilder());
+        passes.register("lvn", PassManager.SSA, 0, new ValueNumbering());
+        passes.register("dse", 0, 0, deadStores);
+        passes.registerRecorded("dse-window");
+        passes.selectLevel(DEFAULT_LEVEL);
+    }
 
     public static void main(String[] args) {
+        Compiler compiler = new Compiler(System.out);
+        boolean stream = false;
+        boolean parallel = false;
+        List<String> files = new ArrayList<>();
+        // options apply to every file, wherever they are given
+        for (String arg : args) {
+            String error = argumentError(arg, compiler.passes);
+            if (error != null) {
+                System.err.println("Compiler: " + error + "; " + USAGE);
+                System.exit(2);
+            }
+            if (arg.matches("-O[0-2]")) {
+                compiler.passes.selectLevel(arg.charAt(2) - '0');
+            } else if (arg.startsWith("--passes=")) {
+                String list = arg.substring("--passes=".length());
+                compiler.passes.select(list.isEmpty() ? new String[0] : list.split(","));
+            } else if (arg.equals("--time-passes")) {
+                compiler.passes.setTiming(true);
+            } else if (arg.equals("--stream")) {
+                stream = true;
+            } else if (arg.equals("--parallel")) {
+                parallel = true;
+            } else {
+                files.add(arg);
+            }
+        }
+        for (String file : files) {
+            try {
+                if (Files.isDirectory(Path.of(file))) {
+                    throw new IOException("is a directory");
+                }
+                if (file.equals("-")) {
+                    compiler.compileStream(Channels.newChannel(System.in));
+                } else if (stream) {
+                    try (FileChannel channel = FileChannel.open(Path.of(file), StandardOpenOption.READ)) {
+                        compiler.compileStream(channel);
+                    }
+                } else {
+                    compiler.compileFile(Path.of(file), parallel);
+                }
+            } catch (IOException e) {
+                System.out.flush();
+                System.err.println("Compiler: " + file + ": " + reason(e));
+                System.exit(1);
+            }
+            if (compiler.passes.timing()) {
+                compiler.passes.printReport(System.err);
+            }
+        }
+        if (!files.isEmpty()) {
+            return;
+        }
+
         String[] program = {
             "BEGIN INTEGER A, B, C, E, M, N, G, H, I, a, c",
             "INPUT A, B, C",
@@ -25,139 +180,676 @@ public class Compiler {
         };
 
         System.out.println("Line-by-Line Compilation:");
-        compileLineByLine(program);
+        compiler.compileLineByLine(program);
+        if (compiler.passes.timing()) {
+            compiler.passes.printReport(System.err);
+        }
 
         System.out.println("\nAll-at-Once Compilation:");
-        compileAllAtOnce(program);
+        compiler.compileAllAtOnce(program);
+        if (compiler.passes.timing()) {
+            compiler.passes.printReport(System.err);
+        }
     }
 
-    private static void compileLineByLine(String[] program) {
+    /** Why reading a file failed, without the file name the exception may repeat. */
+    private static String reason(IOException e) {
+        if (e instanceof NoSuchFileException) {
+            return "no such file";
+        }
+        if (e instanceof AccessDeniedException) {
+            return "permission denied";
+        }
+        return e.getMessage() != null ? e.getMessage() : e.toString();
+    }
+
+    /** What is wrong with a command-line argument, or null if nothing is. */
+    private static String argumentError(String arg, PassManager passes) {
+        if (arg.startsWith("--passes=")) {
+            String list = arg.substring("--passes=".length());
+            for (String name : list.isEmpty() ? new String[0] : list.split(",")) {
+                if (!passes.isPass(name)) {
+                    return "unknown pass '" + name + "'";
+                }
+            }
+            return null;
+        }
+        if (arg.startsWith("-O")) {
+            return arg.matches("-O[0-2]") ? null : "unknown optimization level '" + arg + "'";
+        }
+        switch (arg) {
+            case "--time-passes":
+            case "--stream":
+            case "--parallel":
+            case "-":
+                return null;
+            default:
+                return arg.startsWith("-") ? "unknown option '" + arg + "'" : null;
+        }
+    }
+
+    private void compileLineByLine(String[] program) {
+        startProgram();
         for (int i = 0; i < program.length; i++) {
-            System.out.println("\nLine " + (i + 1) + ": " + program[i]);
-            compileLine(program[i], i + 1);
+            out.println("\nLine " + (i + 1) + ": " + program[i]);
+            ByteBuffer line = ByteBuffer.wrap(program[i].getBytes(StandardCharsets.UTF_8));
+            lineIndex = new LineIndex(new int[] {0}, i + 1);
+            compileLine(line, 0, line.limit(), i + 1);
         }
+        finishProgram();
     }
 
-    private static void compileAllAtOnce(String[] program) {
+    private void compileAllAtOnce(String[] program) {
         StringBuilder fullProgram = new StringBuilder();
         for (String line : program) {
             fullProgram.append(line).append("\n");
         }
-        System.out.println("\nFull Program:\n" + fullProgram.toString());
-        compileFullProgram(fullProgram.toString());
+        out.println("\nFull Program:\n" + fullProgram.toString());
+        compileFullProgram(ByteBuffer.wrap(fullProgram.toString().getBytes(StandardCharsets.UTF_8)));
     }
 
-    private static void compileLine(String line, int lineNumber) {
-        List<String> tokens = lexicalAnalysis(line, lineNumber);
-        if (tokens != null) {
-            syntaxAnalysis(tokens, lineNumber);
+    private void compileFile(Path file, boolean parallel) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("too large to map (" + size + " bytes)");
+            }
+            MappedByteBuffer program = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (parallel) {
+                compileFullProgramParallel(program);
+            } else {
+                compileFullProgram(program);
+            }
         }
     }
 
-    private static void compileFullProgram(String program) {
-        String[] lines = program.split("\n");
-        for (int i = 0; i < lines.length; i++) {
-            System.out.println("\nLine " + (i + 1) + ": " + lines[i]);
-            compileLine(lines[i], i + 1);
+    /**
+     * Compiles a program read through a fixed-size direct buffer, one line at a
+     * time, so memory use does not depend on program size. A line that does not
+     * fit is carried over to the front of the buffer; the buffer only grows when
+     * a single line is longer than its whole capacity.
+     */
+    void compileStream(ReadableByteChannel in) throws IOException {
+        startProgram();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(STREAM_BUFFER_SIZE);
+        int lineNumber = 0;
+        boolean eof = false;
+        while (!eof) {
+            eof = in.read(buffer) < 0;
+            buffer.flip();
+            // the buffer was compacted and refilled, so its bitmaps are stale
+            delimiterSource = null;
+            int end = buffer.limit();
+            int[] lineStarts = SCANNER.lineStarts(buffer, 0, end);
+            lineIndex = new LineIndex(lineStarts, lineNumber + 1);
+            int from = 0;
+            for (int i = 0; i < lineStarts.length; i++) {
+                from = lineStarts[i];
+                int to = i + 1 < lineStarts.length ? lineStarts[i + 1] - 1 : end - 1;
+                if (to < end && buffer.get(to) == '\n') {
+                    compileSourceLine(buffer, from, to, ++lineNumber);
+                    from = to + 1;
+                }
+            }
+            if (eof) {
+                if (from < end) {
+                    compileSourceLine(buffer, from, end, ++lineNumber);
+                }
+                break;
+            }
+            buffer.position(from);
+            buffer.compact();
+            if (!buffer.hasRemaining()) {
+                ByteBuffer larger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+                buffer.flip();
+                buffer = larger.put(buffer);
+            }
         }
+        finishProgram();
     }
 
-    private static List<String> lexicalAnalysis(String line, int lineNumber) {
-        List<String> tokens = new ArrayList<>();
-        String[] parts = line.split("\\s+|(?=[=+\\-*/,;])|(?<=[=+\\-*/,;])");
+    private void compileLine(ByteBuffer source, int from, int to, int lineNumber) {
+        boolean valid = checkLine(source, from, to);
+        valid = checkSymbols() && valid && semanticAnalysis(statement, lineNumber);
+        symbolTable.assign(SymbolTable.definitions(tokens));
+        diagnostics.print(out, lineIndex);
+        if (valid) {
+            out.println("Semantic Analysis passed for line " + lineNumber);
+            intermediateCodeGeneration(statement, lineNumber);
+        }
+    }
+
+    /**
+     * Runs the lexical and syntax phases over one line. Errors are left in
+     * {@link #diagnostics()}, the tokens in {@link #tokens()} and the tree of
+     * an assignment in {@link #ast()}, which is reused from the previous line.
+     */
+    boolean checkLine(ByteBuffer source, int from, int to) {
+        diagnostics.clear();
+        ast.reset();
+        boolean lexical = lexicalAnalysis(source, from, to);
+        // parse even after lexical errors, so a single pass reports every error
+        boolean syntax = !tokens.isEmpty() && syntaxAnalysis();
+        return lexical && syntax;
+    }
 
-        for (String part : parts) {
-            part = part.trim();
-            if (!part.isEmpty()) {
-                tokens.add(part);
+    TokenStream tokens() {
+        return tokens;
+    }
+
+    AstArena ast() {
+        return ast;
+    }
+
+    Diagnostics diagnostics() {
+        return diagnostics;
+    }
+
+    SymbolInterner symbols() {
+        return symbols;
+    }
+
+    PassManager passes() {
+        return passes;
+    }
+
+    /** Clears what the previous program left behind in the symbol table and the back end. */
+    private void startProgram() {
+        symbolTable.clear();
+        passes.clear();
+        holdDeadStores = passes.selected("dse");
+    }
+
+    /** Resolves the statements still waiting for dead-store elimination, with nothing live at the end. */
+    private void finishProgram() {
+        if (deadStores.pending() > 0) {
+            releaseDeadStores(true);
+        }
+        out.flush();
+    }
+
+    void compileFullProgram(ByteBuffer program) {
+        startProgram();
+        compileLines(program, 0, program.limit(), 1);
+        finishProgram();
+    }
+
+    /**
+     * Splits the program into chunks that end on line boundaries and compiles
+     * them on the common ForkJoinPool, each into its own output buffer. Line
+     * numbers for every chunk are known up front from a parallel newline count,
+     * and so are the variables declared and assigned before each chunk, from a
+     * parallel pre-pass that only lexes. Chunk output is written back in
+     * order, and the back end from optimization on, which carries state from
+     * one statement to the next, runs on the writing thread as each chunk is
+     * written, so the result is byte-for-byte the same as
+     * {@link #compileFullProgram}. Only two chunks per worker are in flight
+     * at once, and chunks are sized so that their output together stays within
+     * {@link #PARALLEL_OUTPUT_BUDGET}, however many workers there are.
+     */
+    void compileFullProgramParallel(ByteBuffer program) {
+        startProgram();
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int end = program.limit();
+        int window = pool.getParallelism() * 2;
+        int budget = PARALLEL_OUTPUT_BUDGET / window / OUTPUT_PER_SOURCE_BYTE;
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(budget, end / (pool.getParallelism() * 4) + 1));
+        List<Integer> bounds = new ArrayList<>();
+        for (int from = 0; from < end; ) {
+            bounds.add(from);
+            int to = Math.min(end, from + chunkSize);
+            while (to < end && program.get(to - 1) != '\n') {
+                to++;
             }
+            from = to;
         }
+        bounds.add(end);
+        int chunks = bounds.size() - 1;
 
-        for (String token : tokens) {
-            if (isKeyword(token) || isIdentifier(token) || isOperator(token) || isSymbol(token)) {
-                // valid token
-            } else if (token.matches("[0-9]+")) {
-                System.out.println("Lexical Error at line " + lineNumber + ": Numbers are not allowed: " + token);
-                return null;
-            } else if (token.equals("WRITEE")){
-                System.out.println("Lexical Error at line " + lineNumber + ": Misspelled Keyword: "+ token);
-                return null;
-            } else if (token.contains("%")||token.contains("$")||token.contains("&")||token.contains("<")||token.contains(">")){
-                System.out.println("Lexical Error at line " + lineNumber + ": Invalid Symbol: "+ token);
-                return null;
-            } else {
-                System.out.println("Lexical Error at line " + lineNumber + ": Invalid token: " + token);
-                return null;
+        int[] newlines = IntStream.range(0, chunks).parallel()
+                .map(i -> SCANNER.countNewlines(program, bounds.get(i), bounds.get(i + 1)))
+                .toArray();
+        SymbolTable[] effects = IntStream.range(0, chunks).parallel()
+                .mapToObj(i -> new Compiler(out, symbols).effectsOf(program, bounds.get(i), bounds.get(i + 1)))
+                .toArray(SymbolTable[]::new);
+        ArrayDeque<ForkJoinTask<Compiler>> tasks = new ArrayDeque<>();
+        int firstLine = 1;
+        SymbolTable before = new SymbolTable();
+        for (int i = 0; i < chunks; i++) {
+            if (tasks.size() == window) {
+                writeChunk(tasks.poll());
             }
+            int from = bounds.get(i);
+            int to = bounds.get(i + 1);
+            int lineNumber = firstLine;
+            SymbolTable chunkStart = new SymbolTable();
+            chunkStart.include(before);
+            tasks.add(pool.submit(() -> {
+                ChunkOutput buffer = new ChunkOutput();
+                Compiler chunk = new Compiler(new PrintStream(buffer), symbols);
+                chunk.deferredOutput = buffer;
+                chunk.symbolTable.include(chunkStart);
+                chunk.compileLines(program, from, to, lineNumber);
+                chunk.out.flush();
+                return chunk;
+            }));
+            firstLine += newlines[i];
+            before.include(effects[i]);
         }
-        return tokens;
+        while (!tasks.isEmpty()) {
+            writeChunk(tasks.poll());
+        }
+        finishProgram();
     }
 
-    private static void syntaxAnalysis(List<String> tokens, int lineNumber) {
-        for (int i = 0; i < tokens.size() - 1; i++) {
-            if (isOperator(tokens.get(i)) && isOperator(tokens.get(i + 1))) {
-                System.out.println("Syntax Error at line " + lineNumber + ": Two consecutive operators: " + tokens.get(i) + " " + tokens.get(i + 1));
-                return;
+    /**
+     * Variables declared and variables assigned in {@code [start, end)}, which
+     * are decided from tokens alone, so this only lexes and prints nothing.
+     */
+    private SymbolTable effectsOf(ByteBuffer source, int start, int end) {
+        int[] lineStarts = SCANNER.lineStarts(source, start, end);
+        for (int i = 0; i < lineStarts.length; i++) {
+            int to = i + 1 < lineStarts.length ? lineStarts[i + 1] - 1 : end;
+            lexicalAnalysis(source, lineStarts[i], to);
+            if (SymbolTable.isDeclaration(tokens)) {
+                for (int t = 0; t < tokens.size(); t++) {
+                    if (tokens.kind(t) == Lexer.IDENTIFIER) {
+                        symbolTable.declare(SymbolTable.bit(tokens.value(t)));
+                    }
+                }
             }
+            symbolTable.assign(SymbolTable.definitions(tokens));
         }
-        if (tokens.get(tokens.size()-1).equals(";")){
-            System.out.println("Syntax Error at line "+ lineNumber + ": Semicolon at end of line not allowed");
-            return;
+        return symbolTable;
+    }
+
+    /** Writes a chunk's output, running the deferred back end of each of its statements in place. */
+    private void writeChunk(ForkJoinTask<Compiler> task) {
+        Compiler chunk = task.join();
+        byte[] chunkOutput = chunk.deferredOutput.bytes();
+        int written = 0;
+        for (int i = 0; i < chunk.deferredCount; i++) {
+            out.write(chunkOutput, written, chunk.deferredOffsets[i] - written);
+            written = chunk.deferredOffsets[i];
+            int to = i + 1 < chunk.deferredCount ? chunk.deferredStarts[i + 1] : chunk.ir.size();
+            optimization(chunk.ir, chunk.deferredStarts[i], to, chunk.deferredLines[i]);
         }
+        out.write(chunkOutput, written, chunk.deferredOutput.size() - written);
+    }
 
-        if (lineNumber == 4 || lineNumber == 6 || lineNumber == 7) {
-            semanticAnalysis(tokens, lineNumber);
+    private void compileLines(ByteBuffer source, int start, int end, int lineNumber) {
+        int[] lineStarts = SCANNER.lineStarts(source, start, end);
+        lineIndex = new LineIndex(lineStarts, lineNumber);
+        for (int i = 0; i < lineStarts.length; i++) {
+            int to = i + 1 < lineStarts.length ? lineStarts[i + 1] - 1 : end;
+            if (to == end && source.get(end - 1) == '\n') {
+                to--;
+            }
+            compileSourceLine(source, lineStarts[i], to, lineNumber++);
         }
     }
 
-    private static void semanticAnalysis(List<String> tokens, int lineNumber) {
-        // Simple example, can be extended for more complex semantic checks
-        System.out.println("Semantic Analysis passed for line " + lineNumber);
-        intermediateCodeGeneration(tokens, lineNumber);
+    private void compileSourceLine(ByteBuffer source, int from, int to, int lineNumber) {
+        if (to > from && source.get(to - 1) == '\r') {
+            to--;
+        }
+        out.println("\nLine " + lineNumber + ": " + TokenStream.slice(source, from, to));
+        compileLine(source, from, to, lineNumber);
     }
 
-    private static void intermediateCodeGeneration(List<String> tokens, int lineNumber) {
-        System.out.println("Intermediate Code Generation for line " + lineNumber + ": " + tokens);
-        optimization(tokens, lineNumber);
+    /**
+     * Builds the delimiter bitmaps of {@code source[from, to)}, which the
+     * following lines are lexed from until one reaches past {@code to}.
+     */
+    private void markDelimiters(ByteBuffer source, int from, int to) {
+        int words = (to - from + 63) >>> 6;
+        if (words > spaces.length) {
+            spaces = new long[words];
+            breaks = new long[words];
+        }
+        SCANNER.delimiters(source, from, to, spaces, breaks);
+        delimiterSource = source;
+        delimiterStart = from;
+        delimiterEnd = to;
     }
 
-    private static void optimization(List<String> tokens, int lineNumber) {
-        System.out.println("Optimization for line " + lineNumber + ": " + tokens);
-        codeGeneration(tokens, lineNumber);
+    private boolean lexicalAnalysis(ByteBuffer source, int from, int to) {
+        tokens.reset(source);
+        if (source != delimiterSource || from < delimiterStart || to > delimiterEnd) {
+            markDelimiters(source, from, Math.max(to, Math.min(source.limit(), from + DELIMITER_BLOCK)));
+        }
+        Lexer lexer = new Lexer(KEYWORD_TABLE, symbols, source, delimiterStart, from, to, spaces, breaks);
+
+        boolean valid = true;
+        for (int kind = lexer.next(); kind != Lexer.EOF; kind = lexer.next()) {
+            tokens.add(kind, lexer.start(), lexer.length(), lexer.value());
+            if (!Lexer.isError(kind)) {
+                continue;
+            }
+            valid = false;
+            String token = lexer.text();
+            switch (kind) {
+                case Lexer.NUMBER:
+                    diagnostics.add(Diagnostics.LEXICAL, lexer.start(), lexer.length(), "Numbers are not allowed: " + token);
+                    break;
+                case Lexer.INVALID_SYMBOL:
+                    diagnostics.add(Diagnostics.LEXICAL, lexer.start(), lexer.length(), "Invalid Symbol: " + token);
+                    break;
+                default:
+                    int keyword = SPELLER.suggest(source, lexer.start(), lexer.length());
+                    if (keyword >= 0) {
+                        diagnostics.add(Diagnostics.LEXICAL, lexer.start(), lexer.length(),
+                                "Misspelled Keyword: " + token + " (did you mean " + KEYWORD_TABLE.keyword(keyword) + "?)");
+                    } else {
+                        diagnostics.add(Diagnostics.LEXICAL, lexer.start(), lexer.length(), "Invalid token: " + token);
+                    }
+            }
+        }
+        return valid;
     }
 
-    private static void codeGeneration(List<String> tokens, int lineNumber) {
-        System.out.println("Code Generation for line " + lineNumber + ": " + tokens);
+    private boolean syntaxAnalysis() {
+        boolean valid = parser.parseStatements();
+        statement = parser.statementCount() > 0 ? parser.statement(0) : AstArena.NONE;
+        return valid;
     }
 
-    private static boolean isKeyword(String token) {
-        for (String keyword : KEYWORDS) {
-            if (keyword.equals(token)) {
-                return true;
+    /**
+     * Adds the identifiers of a declaration to the symbol table, or checks
+     * that those of any other statement are declared. Runs on lines with
+     * lexical or syntax errors too, so every undeclared name is reported in
+     * one pass. Returns false if it reported an error. Leaves the line's
+     * identifiers in {@link #identifiers} for the statement analysers.
+     */
+    private boolean checkSymbols() {
+        int count = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.kind(i) == Lexer.IDENTIFIER) {
+                if (count == identifiers.length) {
+                    identifiers = Arrays.copyOf(identifiers, count * 2);
+                    identifierStarts = Arrays.copyOf(identifierStarts, count * 2);
+                }
+                identifiers[count] = tokens.value(i);
+                identifierStarts[count++] = tokens.start(i);
             }
         }
-        return false;
+        identifierCount = count;
+        int errors = diagnostics.size();
+        if (SymbolTable.isDeclaration(tokens)) {
+            symbolTable.declare(identifiers, identifierStarts, count, diagnostics, symbols);
+        } else {
+            symbolTable.checkDeclared(identifiers, identifierStarts, count, diagnostics, symbols);
+        }
+        return diagnostics.size() == errors;
     }
 
-    private static boolean isIdentifier(String token) {
-        return token.matches(IDENTIFIER_REGEX);
+    /**
+     * Runs the semantic checks for the statement's kind. A line that parsed
+     * without errors holds exactly one statement. Returns false if any check
+     * reported an error.
+     */
+    private boolean semanticAnalysis(int statement, int lineNumber) {
+        int errors = diagnostics.size();
+        analysers[ast.kind(statement)].run(statement, lineNumber);
+        return diagnostics.size() == errors;
     }
 
-    private static boolean isOperator(String token) {
-        for (String operator : OPERATORS) {
-            if (operator.equals(token)) {
-                return true;
-            }
+    /** Declarations, INPUT and END have nothing to check beyond {@link #checkSymbols()}. */
+    private void analyseStatement(int statement, int lineNumber) {
+    }
+
+    /** Every variable read must be definitely assigned; the target is the first identifier. */
+    private void analyseAssignment(int statement, int lineNumber) {
+        symbolTable.checkAssigned(identifiers, identifierStarts, 1, identifierCount, "Unassigned variable: ",
+                diagnostics, symbols);
+    }
+
+    private void analyseWrite(int statement, int lineNumber) {
+        symbolTable.checkAssigned(identifiers, identifierStarts, 0, identifierCount, "WRITE of unassigned variable: ",
+                diagnostics, symbols);
+    }
+
+    /** Declarations and END only matter to the semantic phase and produce no code. */
+    private void lowerNothing(int statement, int lineNumber) {
+    }
+
+    private void lowerInput(int statement, int lineNumber) {
+        for (int list = ast.left(statement); list != AstArena.NONE; list = ast.right(list)) {
+            ir.add(ThreeAddressCode.INPUT, ast.value(ast.left(list)), ThreeAddressCode.NONE, ThreeAddressCode.NONE);
+        }
+    }
+
+    private void lowerWrite(int statement, int lineNumber) {
+        for (int list = ast.left(statement); list != AstArena.NONE; list = ast.right(list)) {
+            ir.add(ThreeAddressCode.WRITE, ThreeAddressCode.NONE, ast.value(ast.left(list)), ThreeAddressCode.NONE);
+        }
+    }
+
+    private void lowerAssignment(int statement, int lineNumber) {
+        ir.addExpression(ast, ast.right(statement), ast.value(ast.left(statement)));
+    }
+
+    /**
+     * Lowers the statement's tree into {@link #ir}, which the later phases
+     * work on. A parallel chunk keeps the code of all its statements and
+     * leaves the rest of the back end to {@link #writeChunk}.
+     */
+    private void intermediateCodeGeneration(int statement, int lineNumber) {
+        if (deferredOutput == null) {
+            ir.reset();
+        }
+        int first = ir.size();
+        ir.startStatement();
+        lowerings[ast.kind(statement)].run(statement, lineNumber);
+        if (ir.size() == first) {
+            return;
+        }
+        out.println("Intermediate Code Generation for line " + lineNumber + ": " + ir.render(first, ir.size(), symbols));
+        if (deferredOutput == null) {
+            optimization(ir, first, ir.size(), lineNumber);
+        } else {
+            defer(first, lineNumber);
+        }
+    }
+
+    private void defer(int first, int lineNumber) {
+        if (deferredCount == deferredOffsets.length) {
+            deferredOffsets = Arrays.copyOf(deferredOffsets, deferredCount * 2);
+            deferredStarts = Arrays.copyOf(deferredStarts, deferredCount * 2);
+            deferredLines = Arrays.copyOf(deferredLines, deferredCount * 2);
+        }
+        deferredOffsets[deferredCount] = deferredOutput.size();
+        deferredStarts[deferredCount] = first;
+        deferredLines[deferredCount++] = lineNumber;
+    }
+
+    /**
+     * Instructions {@code [from, to)} of {@code code} are one statement, in
+     * program order. With dead-store elimination on, the statement waits in
+     * a window, and all output after it is held back, until the statements
+     * that follow show which of its stores are read.
+     */
+    private void optimization(ThreeAddressCode code, int from, int to, int lineNumber) {
+        to = passes.run(code, from, to);
+        if (!holdDeadStores) {
+            printOptimized(code, from, to, lineNumber);
+            return;
+        }
+        output.hold();
+        deadStores.add(code, from, to, lineNumber, output.size());
+        if (deadStores.pending() == DEAD_STORE_WINDOW) {
+            releaseDeadStores(false);
+        }
+    }
+
+    /**
+     * Called when held output reaches {@link #DEAD_STORE_WINDOW_BYTES}, which
+     * lines without code, such as lines with errors, also add to. Resolves
+     * the window early until what is still held is under the limit again.
+     */
+    private void releaseHeldOutput() {
+        while (deadStores.pending() > 0 && output.size() >= DEAD_STORE_WINDOW_BYTES) {
+            releaseDeadStores(false);
+        }
+    }
+
+    /**
+     * Runs dead-store elimination over the window and prints the oldest half
+     * of it, or all of it at the end of the program. Before the end, every
+     * variable counts as live after the window, which can only keep a store
+     * that is dead; the statements printed have the rest of the window as
+     * lookahead.
+     */
+    private void releaseDeadStores(boolean end) {
+        long start = passes.start();
+        long bytes = passes.allocated();
+        int pending = deadStores.pending();
+        int released = end ? pending : Math.max(1, pending / 2);
+        deadStores.resolve(end ? 0 : DeadStoreElimination.ALL_LIVE);
+        long in = 0;
+        long kept = 0;
+        int[] ends = new int[released];
+        for (int s = 0; s < released; s++) {
+            ends[s] = deadStores.compact(s);
+            in += deadStores.end(s) - deadStores.start(s);
+            kept += ends[s] - deadStores.start(s);
+        }
+        passes.record("dse-window", start, bytes, in, kept);
+        for (int s = 0; s < released; s++) {
+            output.writeUpTo(deadStores.offset(s));
+            printOptimized(deadStores.window(), deadStores.start(s), ends[s], deadStores.line(s));
+        }
+        if (released == pending) {
+            output.release();
+            deadStores.removeFirst(released, 0);
+        } else {
+            deadStores.removeFirst(released, output.compact());
+        }
+    }
+
+    private void printOptimized(ThreeAddressCode code, int from, int to, int lineNumber) {
+        if (from == to) {
+            output.target().println("Optimization for line " + lineNumber + ": removed, no value reaches a WRITE");
+            return;
+        }
+        output.target().println("Optimization for line " + lineNumber + ": " + code.render(from, to, symbols));
+        codeGeneration(code, from, to, lineNumber);
+    }
+
+    private void codeGeneration(ThreeAddressCode code, int from, int to, int lineNumber) {
+        SsaBuilder.destruct(code, from, to);
+        output.target().println("Code Generation for line " + lineNumber + ": " + code.render(from, to, symbols));
+    }
+
+    /** One phase for a single statement, selected by the kind of its root node. */
+    @FunctionalInterface
+    private interface StatementPhase {
+        void run(int statement, int lineNumber);
+    }
+
+    /** Output of a parallel chunk, read back in place rather than copied out. */
+    private static final class ChunkOutput extends ByteArrayOutputStream {
+
+        /** The buffer, of which the first {@link #size()} bytes are the output. */
+        byte[] bytes() {
+            return buf;
         }
-        return false;
     }
 
-    private static boolean isSymbol(String token) {
-        for (String symbol : SYMBOLS) {
-            if (symbol.equals(token)) {
-                return true;
+    /**
+     * Passes bytes straight through to the real output, or holds them back
+     * while statements wait for dead-store elimination, to be written up to
+     * the offset of each statement as its code is printed. Once {@code limit}
+     * bytes are held, every write runs {@code overflow}, which is to release
+     * some of them.
+     */
+    private static final class HeldOutput extends OutputStream {
+
+        private final PrintStream target;
+        private final int limit;
+        private final Runnable overflow;
+        private byte[] buffer = new byte[4096];
+        private int size;
+        private int written;
+        private boolean holding;
+
+        HeldOutput(PrintStream target, int limit, Runnable overflow) {
+            this.target = target;
+            this.limit = limit;
+            this.overflow = overflow;
+        }
+
+        PrintStream target() {
+            return target;
+        }
+
+        @Override
+        public void write(int b) {
+            if (!holding) {
+                target.write(b);
+                return;
+            }
+            ensureCapacity(1);
+            buffer[size++] = (byte) b;
+            if (size >= limit) {
+                overflow.run();
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            if (!holding) {
+                target.write(bytes, offset, length);
+                return;
+            }
+            ensureCapacity(length);
+            System.arraycopy(bytes, offset, buffer, size, length);
+            size += length;
+            if (size >= limit) {
+                overflow.run();
+            }
+        }
+
+        @Override
+        public void flush() {
+            target.flush();
+        }
+
+        void hold() {
+            holding = true;
+        }
+
+        /** Bytes held so far, which is the offset the next held byte goes to. */
+        int size() {
+            return size;
+        }
+
+        void writeUpTo(int offset) {
+            target.write(buffer, written, offset - written);
+            written = offset;
+        }
+
+        /** Drops the bytes already written from the front of the buffer and returns how many there were. */
+        int compact() {
+            int shift = written;
+            System.arraycopy(buffer, written, buffer, 0, size - written);
+            size -= written;
+            written = 0;
+            return shift;
+        }
+
+        /** Writes everything still held and passes bytes straight through again. */
+        void release() {
+            writeUpTo(size);
+            size = 0;
+            written = 0;
+            holding = false;
+        }
+
+        private void ensureCapacity(int length) {
+            if (size + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(size + length, buffer.length * 2));
             }
         }
-        return false;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,184 @@
+package compiler;
+
+import java.util.Arrays;
+
+/**
+ * Removes assignments and computations whose values never reach a WRITE, by
+ * backward liveness over bitsets: the variables live at a point are one
+ * {@code long} of symbol bits, and a statement's temporaries are marked
+ * live with a stamp per temporary. Walking backward, a WRITE makes its
+ * operand live, an assignment to a variable or temporary that is not live
+ * is dropped, and any other assignment kills its target and makes its
+ * operands live, so everything feeding only dead code goes too. INPUT is
+ * always kept, since it consumes input whether or not the value is used.
+ *
+ * <p>As a pass over one statement ({@link #run}) it assumes every variable
+ * is live afterwards and only removes temporaries left unused by earlier
+ * passes. Dead stores need the statements that follow, so the compiler also
+ * {@link #add adds} statements to a window and {@link #resolve resolves} it
+ * once it is full, with every variable live after the window, or at the end
+ * of the program, with none.
+ */
+final class DeadStoreElimination implements PassManager.Pass {
+
+    static final long ALL_LIVE = -1L;
+
+    private int[] tempStamps = new int[16];
+    private int stamp;
+    private boolean[] needed = new boolean[64];
+
+    private final ThreeAddressCode window = new ThreeAddressCode();
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int[] lines = new int[16];
+    private int[] offsets = new int[16];
+    private int count;
+
+    @Override
+    public void clear() {
+        window.reset();
+        count = 0;
+    }
+
+    @Override
+    public int run(ThreeAddressCode code, int from, int to) {
+        ensureNeeded(to - from);
+        mark(code, from, to, ALL_LIVE, from);
+        return compact(code, from, to, from);
+    }
+
+    /** Number of statements in the window. */
+    int pending() {
+        return count;
+    }
+
+    /**
+     * Adds a statement, instructions {@code [from, to)} of {@code code}, to
+     * the window, with its line number and the output offset its code is to
+     * be printed at.
+     */
+    void add(ThreeAddressCode code, int from, int to, int lineNumber, int offset) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+            lines = Arrays.copyOf(lines, count * 2);
+            offsets = Arrays.copyOf(offsets, count * 2);
+        }
+        starts[count] = window.size();
+        window.addAll(code, from, to);
+        ends[count] = window.size();
+        lines[count] = lineNumber;
+        offsets[count++] = offset;
+    }
+
+    /** Decides which instructions in the window are needed, given the variables live after it. */
+    void resolve(long liveOut) {
+        ensureNeeded(window.size());
+        long live = liveOut;
+        for (int s = count - 1; s >= 0; s--) {
+            live = mark(window, starts[s], ends[s], live, 0);
+        }
+    }
+
+    ThreeAddressCode window() {
+        return window;
+    }
+
+    int start(int statement) {
+        return starts[statement];
+    }
+
+    int end(int statement) {
+        return ends[statement];
+    }
+
+    int line(int statement) {
+        return lines[statement];
+    }
+
+    int offset(int statement) {
+        return offsets[statement];
+    }
+
+    /** Drops the resolved dead code of a statement in the window and returns its new end. */
+    int compact(int statement) {
+        return compact(window, starts[statement], ends[statement], 0);
+    }
+
+    /** Removes the first {@code released} statements and moves the offsets of the rest back by {@code shift}. */
+    void removeFirst(int released, int shift) {
+        int instructions = released < count ? starts[released] : window.size();
+        window.removeFirst(instructions);
+        int rest = count - released;
+        for (int s = 0; s < rest; s++) {
+            starts[s] = starts[s + released] - instructions;
+            ends[s] = ends[s + released] - instructions;
+            lines[s] = lines[s + released];
+            offsets[s] = offsets[s + released] - shift;
+        }
+        count = rest;
+    }
+
+    /**
+     * Marks in {@link #needed}, at index {@code i - base}, which of
+     * instructions {@code [from, to)} are needed when the variables in
+     * {@code live} are live after them. Returns the variables live before.
+     */
+    private long mark(ThreeAddressCode code, int from, int to, long live, int base) {
+        stamp++;
+        for (int i = to - 1; i >= from; i--) {
+            int opcode = code.opcode(i);
+            int dest = code.dest(i);
+            boolean keep;
+            if (opcode == ThreeAddressCode.WRITE || opcode == ThreeAddressCode.INPUT) {
+                keep = true;
+            } else if (ThreeAddressCode.isTemp(dest)) {
+                keep = -dest < tempStamps.length && tempStamps[-dest] == stamp;
+            } else {
+                keep = (live & SymbolTable.bit(ThreeAddressCode.symbol(dest))) != 0;
+            }
+            needed[i - base] = keep;
+            if (!keep) {
+                continue;
+            }
+            if (ThreeAddressCode.isVariable(dest)) {
+                live &= ~SymbolTable.bit(ThreeAddressCode.symbol(dest));
+            }
+            live = use(code.left(i), live);
+            live = use(code.right(i), live);
+        }
+        return live;
+    }
+
+    private long use(int operand, long live) {
+        if (ThreeAddressCode.isVariable(operand)) {
+            return live | SymbolTable.bit(ThreeAddressCode.symbol(operand));
+        }
+        if (ThreeAddressCode.isTemp(operand)) {
+            if (-operand >= tempStamps.length) {
+                tempStamps = Arrays.copyOf(tempStamps, Math.max(-operand + 1, tempStamps.length * 2));
+            }
+            tempStamps[-operand] = stamp;
+        }
+        return live;
+    }
+
+    private int compact(ThreeAddressCode code, int from, int to, int base) {
+        int kept = from;
+        for (int i = from; i < to; i++) {
+            if (needed[i - base]) {
+                code.set(kept++, code.opcode(i), code.dest(i), code.left(i), code.right(i));
+            }
+        }
+        if (kept < to) {
+            code.renumberTemps(from, kept);
+        }
+        return kept;
+    }
+
+    private void ensureNeeded(int size) {
+        if (size > needed.length) {
+            needed = new boolean[Math.max(size, needed.length * 2)];
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package compiler;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Reusable buffer of error messages. Each entry keeps its phase, the source
+ * span it refers to (start offset and length) and its message. Line and column
+ * are only worked out from a {@link LineIndex} when the entry is printed, so
+ * callers such as {@link IncrementalCompiler} can also store entries and
+ * render them later under a different line number.
+ */
+final class Diagnostics {
+
+    static final int LEXICAL = 0;
+    static final int SYNTAX = 1;
+    static final int SEMANTIC = 2;
+
+    private static final String[] PHASE_NAMES = {"Lexical", "Syntax", "Semantic"};
+
+    private int[] phases = new int[8];
+    private int[] starts = new int[8];
+    private int[] lengths = new int[8];
+    private String[] messages = new String[8];
+    private int size;
+
+    void add(int phase, int start, int length, String message) {
+        if (size == phases.length) {
+            phases = Arrays.copyOf(phases, size * 2);
+            starts = Arrays.copyOf(starts, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+            messages = Arrays.copyOf(messages, size * 2);
+        }
+        phases[size] = phase;
+        starts[size] = start;
+        lengths[size] = length;
+        messages[size] = message;
+        size++;
+    }
+
+    void clear() {
+        Arrays.fill(messages, 0, size, null);
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int phase(int index) {
+        return phases[index];
+    }
+
+    int start(int index) {
+        return starts[index];
+    }
+
+    int length(int index) {
+        return lengths[index];
+    }
+
+    String message(int index) {
+        return messages[index];
+    }
+
+    /** Formats an entry whose span starts at {@code column} of {@code line} and is {@code length} bytes long. */
+    static String format(int phase, int line, int column, int length, String message) {
+        String span = length > 1 ? "columns " + column + "-" + (column + length - 1) : "column " + column;
+        return PHASE_NAMES[phase] + " Error at line " + line + ", " + span + ": " + message;
+    }
+
+    void print(PrintStream out, LineIndex lines) {
+        for (int i = 0; i < size; i++) {
+            out.println(format(phases[i], lines.line(starts[i]), lines.column(starts[i]), lengths[i], messages[i]));
+        }
+    }
+}
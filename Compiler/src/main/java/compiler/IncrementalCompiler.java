@@ -0,0 +1,276 @@
+package compiler;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps per-line lexical and syntax results for a program that is edited in
+ * place, so an edit only re-checks the lines that changed. Results are cached
+ * by line content, which also covers undo and moved or duplicated lines, and
+ * are stored without line numbers so inserting or deleting lines above does
+ * not invalidate them.
+ *
+ * <p>The variables declared and assigned before each line are kept as a
+ * checkpoint. After an edit, the semantic checks start from the checkpoint
+ * before it and go forward only while the state differs from the old
+ * checkpoints, re-checking just the lines that name a variable whose state
+ * changed. An edit that keeps a line's declarations and assignments re-checks
+ * that line alone.
+ *
+ * <p>This is the entry point for tools that keep a program open while it is
+ * edited. Line indexes are 0-based, line numbers in messages 1-based.
+ */
+public final class IncrementalCompiler {
+
+    private static final int MIN_CACHE_SIZE = 1024;
+
+    private final Compiler compiler = new Compiler(new PrintStream(OutputStream.nullOutputStream()));
+    private final List<LineResult> lines = new ArrayList<>();
+    private final List<Messages> semantic = new ArrayList<>();
+    /** Variables declared and assigned before each line, and after the last one. */
+    private long[] declaredBefore = new long[16];
+    private long[] assignedBefore = new long[16];
+    private final Diagnostics scratch = new Diagnostics();
+    private final Map<String, LineResult> cache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, LineResult> eldest) {
+            return size() > Math.max(MIN_CACHE_SIZE, 2 * lines.size());
+        }
+    };
+    private int rechecked;
+
+    public IncrementalCompiler(String... program) {
+        replaceLines(0, 0, program);
+    }
+
+    public int lineCount() {
+        return lines.size();
+    }
+
+    public String line(int index) {
+        return lines.get(index).text;
+    }
+
+    public void setLine(int index, String text) {
+        replaceLines(index, index + 1, text);
+    }
+
+    /** Replaces lines {@code [from, to)} (0-based) with {@code replacement}. */
+    public void replaceLines(int from, int to, String... replacement) {
+        int added = replacement.length;
+        int kept = Math.min(added, to - from);
+        // the state before the edit, read before the checkpoints after it move
+        SymbolTable table = new SymbolTable();
+        table.declare(declaredBefore[from]);
+        table.assign(assignedBefore[from]);
+        List<LineResult> results = new ArrayList<>(added);
+        for (String text : replacement) {
+            results.add(analyze(text));
+        }
+        // lines replaced one for one are set in place; only the rest shift the lists
+        for (int i = 0; i < kept; i++) {
+            lines.set(from + i, results.get(i));
+        }
+        if (added < to - from) {
+            lines.subList(from + added, to).clear();
+            semantic.subList(from + added, to).clear();
+        } else if (added > to - from) {
+            lines.addAll(to, results.subList(kept, added));
+            semantic.addAll(to, Collections.nCopies(added - kept, null));
+        }
+        moveCheckpoints(to, added - (to - from));
+
+        rechecked = 0;
+        int i = from;
+        for (; i < lines.size(); i++) {
+            long declaredChange = table.declared() ^ declaredBefore[i];
+            long assignedChange = table.assigned() ^ assignedBefore[i];
+            LineResult line = lines.get(i);
+            if (i < from + added || (line.names & declaredChange) != 0 || (line.uses & assignedChange) != 0) {
+                declaredBefore[i] = table.declared();
+                assignedBefore[i] = table.assigned();
+                semantic.set(i, checkSemantics(line, table));
+                rechecked++;
+            } else if (declaredChange == 0 && assignedChange == 0) {
+                // same state as before the edit, so nothing from here on changes
+                return;
+            } else {
+                declaredBefore[i] = table.declared();
+                assignedBefore[i] = table.assigned();
+                if (line.declaration) {
+                    table.declare(line.names);
+                }
+            }
+            table.assign(line.defs);
+        }
+        declaredBefore[i] = table.declared();
+        assignedBefore[i] = table.assigned();
+    }
+
+    /**
+     * Moves the checkpoints from line {@code from} on, including the one after
+     * the last line, by {@code shift} lines, where lines were inserted or
+     * removed before them.
+     */
+    private void moveCheckpoints(int from, int shift) {
+        int count = lines.size() + 1;
+        if (count > declaredBefore.length) {
+            declaredBefore = Arrays.copyOf(declaredBefore, Math.max(count, declaredBefore.length * 2));
+            assignedBefore = Arrays.copyOf(assignedBefore, declaredBefore.length);
+        }
+        if (shift != 0) {
+            System.arraycopy(declaredBefore, from, declaredBefore, from + shift, count - from - shift);
+            System.arraycopy(assignedBefore, from, assignedBefore, from + shift, count - from - shift);
+        }
+    }
+
+    /** Number of lines whose semantic results were recomputed by the last edit. */
+    public int recheckedLines() {
+        return rechecked;
+    }
+
+    /** Every error in the program, in line order, formatted as the compiler prints them. */
+    public List<String> diagnostics() {
+        List<String> all = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            LineResult line = lines.get(i);
+            for (int j = 0; j < line.messages.length; j++) {
+                // each line is analysed in its own buffer, so offsets are columns - 1
+                all.add(Diagnostics.format(line.phases[j], i + 1, line.starts[j] + 1, line.lengths[j], line.messages[j]));
+            }
+            Messages messages = semantic.get(i);
+            if (messages != null) {
+                for (int j = 0; j < messages.messages.length; j++) {
+                    all.add(Diagnostics.format(Diagnostics.SEMANTIC, i + 1, messages.starts[j] + 1, messages.lengths[j],
+                            messages.messages[j]));
+                }
+            }
+        }
+        return all;
+    }
+
+    public void printDiagnostics(PrintStream out) {
+        for (String message : diagnostics()) {
+            out.println(message);
+        }
+    }
+
+    private LineResult analyze(String text) {
+        LineResult cached = cache.get(text);
+        if (cached != null) {
+            return cached;
+        }
+        ByteBuffer source = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        boolean valid = compiler.checkLine(source, 0, source.limit());
+        LineResult result = new LineResult(text, valid, compiler.diagnostics(), compiler.tokens());
+        cache.put(text, result);
+        return result;
+    }
+
+    /**
+     * Semantic messages for one line, or null when there are none. The table
+     * holds the declarations and assignments of the lines above and takes in
+     * this line's declarations; the caller adds its assignments.
+     */
+    private Messages checkSemantics(LineResult line, SymbolTable table) {
+        scratch.clear();
+        int count = line.identifiers.length;
+        if (line.declaration) {
+            table.declare(line.identifiers, line.identifierStarts, count, scratch, compiler.symbols());
+        } else {
+            table.checkDeclared(line.identifiers, line.identifierStarts, count, scratch, compiler.symbols());
+        }
+        if (scratch.size() == 0 && line.readFrom < count) {
+            table.checkAssigned(line.identifiers, line.identifierStarts, line.readFrom, count,
+                    line.write ? "WRITE of unassigned variable: " : "Unassigned variable: ", scratch, compiler.symbols());
+        }
+        return scratch.size() == 0 ? null : new Messages(scratch);
+    }
+
+    private static final class LineResult {
+
+        final String text;
+        final int[] phases;
+        final int[] starts;
+        final int[] lengths;
+        final String[] messages;
+        final boolean declaration;
+        final int[] identifiers;
+        final int[] identifierStarts;
+        final long names;
+        final int readFrom;
+        final boolean write;
+        final long defs;
+        final long uses;
+
+        LineResult(String text, boolean valid, Diagnostics diagnostics, TokenStream tokens) {
+            this.text = text;
+            this.phases = new int[diagnostics.size()];
+            this.starts = new int[diagnostics.size()];
+            this.lengths = new int[diagnostics.size()];
+            this.messages = new String[diagnostics.size()];
+            for (int i = 0; i < phases.length; i++) {
+                phases[i] = diagnostics.phase(i);
+                starts[i] = diagnostics.start(i);
+                lengths[i] = diagnostics.length(i);
+                messages[i] = diagnostics.message(i);
+            }
+            int first = valid && tokens.kind(0) == Lexer.KEYWORD ? tokens.value(0) : -1;
+            this.declaration = SymbolTable.isDeclaration(tokens);
+            int count = 0;
+            for (int i = 0; i < tokens.size(); i++) {
+                count += tokens.kind(i) == Lexer.IDENTIFIER ? 1 : 0;
+            }
+            this.identifiers = new int[count];
+            this.identifierStarts = new int[count];
+            long names = 0;
+            for (int i = 0, j = 0; i < tokens.size(); i++) {
+                if (tokens.kind(i) == Lexer.IDENTIFIER) {
+                    identifiers[j] = tokens.value(i);
+                    identifierStarts[j++] = tokens.start(i);
+                    names |= SymbolTable.bit(tokens.value(i));
+                }
+            }
+            this.names = names;
+            // a WRITE reads all its identifiers, an assignment all but its target
+            if (!valid || declaration || first == Compiler.INPUT || first == Compiler.END) {
+                this.readFrom = count;
+            } else {
+                this.readFrom = first == Compiler.WRITE ? 0 : 1;
+            }
+            this.write = first == Compiler.WRITE;
+            long uses = 0;
+            for (int i = readFrom; i < count; i++) {
+                uses |= SymbolTable.bit(identifiers[i]);
+            }
+            this.defs = SymbolTable.definitions(tokens);
+            this.uses = uses;
+        }
+    }
+
+    private static final class Messages {
+
+        final int[] starts;
+        final int[] lengths;
+        final String[] messages;
+
+        Messages(Diagnostics diagnostics) {
+            this.starts = new int[diagnostics.size()];
+            this.lengths = new int[diagnostics.size()];
+            this.messages = new String[diagnostics.size()];
+            for (int i = 0; i < messages.length; i++) {
+                starts[i] = diagnostics.start(i);
+                lengths[i] = diagnostics.length(i);
+                messages[i] = diagnostics.message(i);
+            }
+        }
+    }
+}
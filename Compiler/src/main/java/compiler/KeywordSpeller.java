@@ -0,0 +1,193 @@
+package compiler;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Suggests the keyword nearest to a misspelled word, within edit distance 2.
+ * Every keyword and each string obtained by deleting up to two of its
+ * characters is indexed once; a word is looked up through its own deletion
+ * variants and candidates are confirmed with a bounded Levenshtein distance.
+ * Query time depends only on the word length, not on the number of keywords.
+ * Words are packed 6 bits per character into a long, so words longer than
+ * {@link #MAX_WORD} characters are never suggestions.
+ */
+final class KeywordSpeller {
+
+    private static final int MAX_DISTANCE = 2;
+    private static final int MAX_WORD = 10;
+    private static final int BITS = 6;
+
+    private final String[] keywords;
+    private long[] keys;
+    private int[][] candidates;
+    private int size;
+
+    KeywordSpeller(String... keywords) {
+        this.keywords = keywords.clone();
+        this.keys = new long[64];
+        this.candidates = new int[64][];
+        for (int k = 0; k < keywords.length; k++) {
+            String keyword = keywords[k];
+            if (keyword.length() > MAX_WORD - MAX_DISTANCE) {
+                continue;
+            }
+            long key = 0;
+            for (int i = keyword.length() - 1; i >= 0; i--) {
+                key = (key << BITS) | code(keyword.charAt(i));
+            }
+            index(key, keyword.length(), k, MAX_DISTANCE);
+        }
+    }
+
+    /**
+     * Returns the index of the keyword closest to {@code source[start, start + length)},
+     * or -1 if none is close enough. Only called for words the lexer already rejected.
+     */
+    int suggest(ByteBuffer source, int start, int length) {
+        if (length > MAX_WORD) {
+            return -1;
+        }
+        long key = 0;
+        for (int i = length - 1; i >= 0; i--) {
+            key = (key << BITS) | code(source.get(start + i));
+        }
+        byte[] word = new byte[length];
+        source.get(start, word);
+        int[] best = {-1, MAX_DISTANCE + 1};
+        probe(key, length, word, best, MAX_DISTANCE);
+        return best[0];
+    }
+
+    private void probe(long key, int length, byte[] word, int[] best, int deletions) {
+        int[] found = lookup(key);
+        if (found != null) {
+            for (int k : found) {
+                String keyword = keywords[k];
+                int limit = Math.min(MAX_DISTANCE, keyword.length() / 2);
+                int distance = distance(word, keyword, limit);
+                if (distance <= limit && (distance < best[1] || distance == best[1] && k < best[0])) {
+                    best[0] = k;
+                    best[1] = distance;
+                }
+            }
+        }
+        if (deletions > 0) {
+            for (int i = 0; i < length; i++) {
+                probe(delete(key, i), length - 1, word, best, deletions - 1);
+            }
+        }
+    }
+
+    private void index(long key, int length, int keyword, int deletions) {
+        add(key, keyword);
+        if (deletions > 0) {
+            for (int i = 0; i < length; i++) {
+                index(delete(key, i), length - 1, keyword, deletions - 1);
+            }
+        }
+    }
+
+    private static long delete(long key, int position) {
+        int shift = position * BITS;
+        long low = key & ((1L << shift) - 1);
+        long high = key >>> (shift + BITS);
+        return low | (high << shift);
+    }
+
+    private int[] lookup(long key) {
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; candidates[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return candidates[slot];
+            }
+        }
+        return null;
+    }
+
+    private void add(long key, int keyword) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (candidates[slot] != null && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        int[] list = candidates[slot];
+        if (list == null) {
+            keys[slot] = key;
+            candidates[slot] = new int[] {keyword};
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+        } else if (list[list.length - 1] != keyword) {
+            list = Arrays.copyOf(list, list.length + 1);
+            list[list.length - 1] = keyword;
+            candidates[slot] = list;
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[][] oldCandidates = candidates;
+        keys = new long[oldKeys.length * 2];
+        candidates = new int[oldKeys.length * 2][];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldCandidates[i] != null) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (candidates[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                candidates[slot] = oldCandidates[i];
+            }
+        }
+    }
+
+    /** Levenshtein distance, or {@code limit + 1} as soon as it must exceed {@code limit}. */
+    private static int distance(byte[] word, String keyword, int limit) {
+        int n = keyword.length();
+        if (Math.abs(word.length - n) > limit) {
+            return limit + 1;
+        }
+        int[] previous = new int[n + 1];
+        int[] current = new int[n + 1];
+        for (int j = 0; j <= n; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= word.length; i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= n; j++) {
+                int cost = word[i - 1] == keyword.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1], previous[j]) + 1, previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[n];
+    }
+
+    /** 1-52 for letters, 53-62 for digits, 63 for anything else; never 0, so packing is injective. */
+    private static long code(int c) {
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 1;
+        }
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 27;
+        }
+        if (c >= '0' && c <= '9') {
+            return c - '0' + 53;
+        }
+        return 63;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
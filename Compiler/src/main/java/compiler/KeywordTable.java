@@ -0,0 +1,108 @@
+package compiler;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * Perfect hash over a configurable keyword set. The constructor searches for a
+ * seed that gives every keyword its own slot, so a lookup is one multiply, one
+ * table read and one region compare, whatever the number of keywords.
+ */
+final class KeywordTable {
+
+    private static final int MAX_SEED_ATTEMPTS = 1 << 16;
+
+    private final String[] keywords;
+    private final byte[][] slots;
+    private final int[] indexes;
+    private final int shift;
+    private final int seed;
+
+    KeywordTable(String... keywords) {
+        if (new HashSet<>(Arrays.asList(keywords)).size() != keywords.length) {
+            throw new IllegalArgumentException("Duplicate keyword in " + Arrays.toString(keywords));
+        }
+        this.keywords = keywords.clone();
+        int size = Integer.highestOneBit(Math.max(keywords.length, 1)) << 1;
+        while (true) {
+            int found = findSeed(size);
+            if (found != 0) {
+                this.shift = shiftFor(size);
+                this.seed = found;
+                break;
+            }
+            size <<= 1;
+        }
+        this.slots = new byte[size][];
+        this.indexes = new int[size];
+        for (int i = 0; i < keywords.length; i++) {
+            int slot = slot(hash(keywords[i]));
+            slots[slot] = keywords[i].getBytes(StandardCharsets.US_ASCII);
+            indexes[slot] = i;
+        }
+    }
+
+    String keyword(int index) {
+        return keywords[index];
+    }
+
+    /** Returns the index of the keyword spelled by {@code source[start, start + length)}, or -1. */
+    int lookup(int hash, ByteBuffer source, int start, int length) {
+        int slot = slot(hash);
+        byte[] keyword = slots[slot];
+        if (keyword == null || keyword.length != length) {
+            return -1;
+        }
+        for (int i = 0; i < length; i++) {
+            if (keyword[i] != source.get(start + i)) {
+                return -1;
+            }
+        }
+        return indexes[slot];
+    }
+
+    /** The rolling hash the lexer accumulates while it scans a word. */
+    static int step(int hash, int c) {
+        return hash * 31 + c;
+    }
+
+    static int hash(String word) {
+        int h = 0;
+        for (int i = 0; i < word.length(); i++) {
+            h = step(h, word.charAt(i));
+        }
+        return h;
+    }
+
+    private int slot(int hash) {
+        return (hash * seed) >>> shift;
+    }
+
+    private static int shiftFor(int size) {
+        return Integer.numberOfLeadingZeros(size) + 1;
+    }
+
+    private int findSeed(int size) {
+        boolean[] used = new boolean[size];
+        int shift = shiftFor(size);
+        for (int attempt = 1; attempt < MAX_SEED_ATTEMPTS; attempt++) {
+            int candidate = attempt * 0x9E3779B1 | 1;
+            Arrays.fill(used, false);
+            boolean collision = false;
+            for (String keyword : keywords) {
+                int slot = (hash(keyword) * candidate) >>> shift;
+                if (used[slot]) {
+                    collision = true;
+                    break;
+                }
+                used[slot] = true;
+            }
+            if (!collision) {
+                return candidate;
+            }
+        }
+        return 0;
+    }
+}
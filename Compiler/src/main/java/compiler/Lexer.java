@@ -0,0 +1,200 @@
+package compiler;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Single-pass scanner over ASCII/UTF-8 source bytes, which are read in place
+ * and never decoded. Token boundaries come from the whitespace and break
+ * bitmaps built by {@link ByteScanner}, so whitespace runs are skipped a word
+ * at a time. Inside a word each byte is looked up once in {@link #WORD_BITS}
+ * and its class bit ORed into a mask, and the finished mask picks the token
+ * kind from {@link #KIND_BY_MASK}, so telling identifiers, numbers, illegal
+ * symbols and other invalid words apart takes no further pass over the word.
+ * All-letter words are resolved against the keyword perfect hash using the
+ * hash accumulated during the same scan.
+ */
+final class Lexer {
+
+    static final int EOF = -1;
+    static final int KEYWORD = 0;
+    static final int IDENTIFIER = 1;
+    static final int OPERATOR = 2;
+    static final int ASSIGN = 3;
+    static final int COMMA = 4;
+    static final int SEMICOLON = 5;
+    static final int NUMBER = 6;
+    static final int INVALID_SYMBOL = 7;
+    static final int INVALID = 8;
+
+    /** Characters reported as "Invalid Symbol" wherever they appear in a word; extend here. */
+    private static final String ILLEGAL_SYMBOLS = "%$&<>";
+
+    // character classes
+    private static final int C_SPACE = 0;
+    private static final int C_WORD = 1;
+    private static final int C_OPERATOR = 2;
+    private static final int C_ASSIGN = 3;
+    private static final int C_COMMA = 4;
+    private static final int C_SEMICOLON = 5;
+
+    // bits ORed together over the bytes of a word
+    private static final int B_LETTER = 1;
+    private static final int B_DIGIT = 2;
+    private static final int B_ILLEGAL = 4;
+    private static final int B_OTHER = 8;
+
+    private static final byte[] CHAR_CLASS = new byte[128];
+    private static final byte[] WORD_BITS = new byte[256];
+    private static final int[] KIND_BY_MASK = new int[16];
+    private static final int[] SINGLE = {EOF, EOF, OPERATOR, ASSIGN, COMMA, SEMICOLON};
+
+    static {
+        Arrays.fill(CHAR_CLASS, (byte) C_WORD);
+        for (char c : " \t\r\n\f\u000B".toCharArray()) {
+            CHAR_CLASS[c] = C_SPACE;
+        }
+        for (char c : "+-*/".toCharArray()) {
+            CHAR_CLASS[c] = C_OPERATOR;
+        }
+        CHAR_CLASS['='] = C_ASSIGN;
+        CHAR_CLASS[','] = C_COMMA;
+        CHAR_CLASS[';'] = C_SEMICOLON;
+
+        Arrays.fill(WORD_BITS, (byte) B_OTHER);
+        for (int c = 'a'; c <= 'z'; c++) {
+            WORD_BITS[c] = B_LETTER;
+            WORD_BITS[c - 'a' + 'A'] = B_LETTER;
+        }
+        for (int c = '0'; c <= '9'; c++) {
+            WORD_BITS[c] = B_DIGIT;
+        }
+        for (char c : ILLEGAL_SYMBOLS.toCharArray()) {
+            WORD_BITS[c] = B_ILLEGAL;
+        }
+
+        for (int mask = 0; mask < KIND_BY_MASK.length; mask++) {
+            if (mask == B_LETTER) {
+                KIND_BY_MASK[mask] = IDENTIFIER;
+            } else if (mask == B_DIGIT) {
+                KIND_BY_MASK[mask] = NUMBER;
+            } else if ((mask & B_ILLEGAL) != 0) {
+                KIND_BY_MASK[mask] = INVALID_SYMBOL;
+            } else {
+                KIND_BY_MASK[mask] = INVALID;
+            }
+        }
+    }
+
+    private final KeywordTable keywords;
+    private final SymbolInterner symbols;
+    private final ByteBuffer source;
+    private final int origin;
+    private final int end;
+    private final long[] spaces;
+    private final long[] breaks;
+    private int pos;
+    private int start;
+    private int value;
+
+    /**
+     * Lexes {@code source[from, to)} using bitmaps filled by
+     * {@link ByteScanner#delimiters} over a range starting at {@code origin}
+     * and covering the line, typically a whole block of lines.
+     */
+    Lexer(KeywordTable keywords, SymbolInterner symbols, ByteBuffer source, int origin, int from, int to,
+            long[] spaces, long[] breaks) {
+        this.keywords = keywords;
+        this.symbols = symbols;
+        this.source = source;
+        this.origin = origin;
+        this.pos = from;
+        this.end = to;
+        this.spaces = spaces;
+        this.breaks = breaks;
+    }
+
+    /** True for the kinds the lexer reports as errors; such tokens stay in the stream for later phases to skip. */
+    static boolean isError(int kind) {
+        return kind >= NUMBER;
+    }
+
+    static boolean isSpace(byte b) {
+        return b >= 0 && CHAR_CLASS[b] == C_SPACE;
+    }
+
+    static boolean isSingle(byte b) {
+        return b >= 0 && CHAR_CLASS[b] >= C_OPERATOR;
+    }
+
+    /** Scans the next token and returns its kind, or {@link #EOF}. */
+    int next() {
+        pos = nextBit(spaces, pos, true);
+        if (pos >= end) {
+            return EOF;
+        }
+        start = pos;
+        int cls = classOf(source.get(pos));
+        if (cls >= C_OPERATOR) {
+            value = source.get(pos++);
+            return SINGLE[cls];
+        }
+        int wordEnd = nextBit(breaks, pos + 1, false);
+        int mask = 0;
+        int hash = 0;
+        for (; pos < wordEnd; pos++) {
+            byte b = source.get(pos);
+            mask |= WORD_BITS[b & 0xFF];
+            hash = KeywordTable.step(hash, b);
+        }
+        value = 0;
+        if (mask == B_LETTER) {
+            if (pos - start > 1) {
+                value = keywords.lookup(hash, source, start, pos - start);
+                return value >= 0 ? KEYWORD : INVALID;
+            }
+            value = symbols.intern(source, start, 1);
+        }
+        return KIND_BY_MASK[mask];
+    }
+
+    /** First position at or after {@code position} whose bit is clear (or set), capped at the end. */
+    private int nextBit(long[] bits, int position, boolean clear) {
+        int bit = position - origin;
+        int limit = end - origin;
+        if (bit >= limit) {
+            return end;
+        }
+        int index = bit >>> 6;
+        int words = (limit + 63) >>> 6;
+        long word = (clear ? ~bits[index] : bits[index]) & (-1L << bit);
+        while (word == 0) {
+            if (++index == words) {
+                return end;
+            }
+            word = clear ? ~bits[index] : bits[index];
+        }
+        return Math.min(end, origin + (index << 6) + Long.numberOfTrailingZeros(word));
+    }
+
+    int start() {
+        return start;
+    }
+
+    int length() {
+        return pos - start;
+    }
+
+    /** Keyword index for keywords, symbol id for identifiers, the character for single-character tokens. */
+    int value() {
+        return value;
+    }
+
+    String text() {
+        return TokenStream.slice(source, start, pos);
+    }
+
+    private static int classOf(byte b) {
+        return b >= 0 ? CHAR_CLASS[b] : C_WORD;
+    }
+}
@@ -0,0 +1,43 @@
+package compiler;
+
+/**
+ * Line-start offsets of one source buffer, built once with
+ * {@link ByteScanner#lineStarts}. Tokens and diagnostics only keep byte
+ * offsets; line and column are looked up here by binary search when a
+ * position is actually reported.
+ */
+final class LineIndex {
+
+    private final int[] starts;
+    private final int firstLine;
+
+    /** {@code starts[i]} is the offset of line {@code firstLine + i}. */
+    LineIndex(int[] starts, int firstLine) {
+        this.starts = starts;
+        this.firstLine = firstLine;
+    }
+
+    /** 1-based line number of {@code offset}. */
+    int line(int offset) {
+        return firstLine + indexOf(offset);
+    }
+
+    /** 1-based column of {@code offset}, counted in bytes. */
+    int column(int offset) {
+        return offset - starts[indexOf(offset)] + 1;
+    }
+
+    private int indexOf(int offset) {
+        int low = 0;
+        int high = starts.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (starts[mid] <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+}
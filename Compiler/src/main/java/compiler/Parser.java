@@ -0,0 +1,372 @@
+package compiler;
+
+import java.util.Arrays;
+
+/**
+ * Parser for the statements of a line. Statements are parsed by a loop over
+ * LL(1) tables that the build generates from {@code src/main/grammar/statements.grammar}
+ * into {@link ParseTables}, so changing the statement syntax means editing
+ * the grammar, not this class. Expressions are a single grammar symbol parsed
+ * by iterative precedence climbing: operands and pending operators live on
+ * explicit stacks and an operator is reduced as soon as a following operator
+ * of equal or lower precedence arrives, which gives {@code * /} over
+ * {@code + -} and left associativity in one linear pass with no recursion per
+ * operator.
+ *
+ * <p>Errors do not stop the parse. After a syntax error the parser skips to
+ * the next statement keyword or the end of the line and carries on, so every
+ * statement on the line is checked. Tokens the lexer already rejected stand
+ * in for an operand (together with any words run into them), which keeps one
+ * bad character from also being reported as a syntax error; a statement
+ * containing one is still parsed but gets no tree.
+ */
+final class Parser {
+
+    private final TokenStream tokens;
+    private final AstArena ast;
+    private final Diagnostics diagnostics;
+    private int[] operands = new int[16];
+    private int[] operators = new int[16];
+    private int[] stack = new int[16];
+    private int[] values = new int[16];
+    private int valueCount;
+    private int[] statements = new int[4];
+    private int statementCount;
+    private int pos;
+
+    Parser(TokenStream tokens, AstArena ast, Diagnostics diagnostics) {
+        this.tokens = tokens;
+        this.ast = ast;
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * Parses every statement in the stream, recovering after each syntax
+     * error. Returns false if any syntax error was reported. Trees of the
+     * statements that parsed cleanly are available from {@link #statement}.
+     */
+    boolean parseStatements() {
+        int errors = diagnostics.size();
+        statementCount = 0;
+        pos = 0;
+        while (pos < tokens.size()) {
+            int start = pos;
+            int before = diagnostics.size();
+            int root = parseStatement(pos);
+            if (diagnostics.size() > before) {
+                synchronize(start);
+            } else if (root != AstArena.NONE) {
+                if (statementCount == statements.length) {
+                    statements = Arrays.copyOf(statements, statementCount * 2);
+                }
+                statements[statementCount++] = root;
+            }
+        }
+        return diagnostics.size() == errors;
+    }
+
+    /** Number of trees built by the last {@link #parseStatements()}. */
+    int statementCount() {
+        return statementCount;
+    }
+
+    int statement(int index) {
+        return statements[index];
+    }
+
+    /**
+     * Parses the statement starting at token {@code index} with the LL(1)
+     * tables generated from {@code statements.grammar}. The loop pops a
+     * symbol and matches it if it is a terminal, expands it through
+     * {@link ParseTables#TABLE} if it is a nonterminal, hands {@code expr} to
+     * the precedence parser, or runs an action that builds the statement's
+     * tree from the nodes matched so far. Returns {@link AstArena#NONE} after
+     * reporting an error, or without one if the statement contains a lexical
+     * error.
+     */
+    private int parseStatement(int index) {
+        if (Lexer.isError(tokens.kind(index)) && !isAssignment(index)) {
+            // most likely a misspelled keyword, already reported by the lexer
+            return parseUnstructured(index);
+        }
+        pos = index;
+        valueCount = 0;
+        int top = 0;
+        stack[top++] = ParseTables.EOF;
+        stack[top++] = ParseTables.START;
+        boolean rejected = false;
+        int root = AstArena.NONE;
+        while (top > 0) {
+            int symbol = stack[--top];
+            if (symbol >= ParseTables.ACTIONS) {
+                if (!rejected) {
+                    root = build(ParseTables.ACTION_KINDS[symbol - ParseTables.ACTIONS], index);
+                }
+            } else if (symbol >= ParseTables.EXTERNALS) {
+                int before = diagnostics.size();
+                int expression = parseExpression();
+                if (diagnostics.size() > before) {
+                    return AstArena.NONE;
+                }
+                rejected |= expression == AstArena.NONE;
+                pushValue(expression);
+            } else if (symbol >= ParseTables.TERMINALS) {
+                int terminal = terminal(pos);
+                int production = ParseTables.TABLE[(symbol - ParseTables.TERMINALS) * ParseTables.TERMINALS + terminal];
+                if (production < 0) {
+                    return unexpected(symbol, terminal);
+                }
+                int from = ParseTables.RHS_START[production];
+                int to = ParseTables.RHS_START[production + 1];
+                if (top + to - from > stack.length) {
+                    stack = Arrays.copyOf(stack, (top + to - from) * 2);
+                }
+                for (int i = from; i < to; i++) {
+                    stack[top++] = ParseTables.RHS[i];
+                }
+            } else if (symbol != terminal(pos)) {
+                return mismatch(symbol);
+            } else if (symbol == ParseTables.ID) {
+                int leaf = operand();
+                rejected |= leaf == AstArena.NONE;
+                pushValue(leaf);
+                pos++;
+            } else if (symbol != ParseTables.EOF) {
+                pos++;
+            }
+        }
+        return root;
+    }
+
+    private int terminal(int index) {
+        if (index >= tokens.size()) {
+            return ParseTables.EOF;
+        }
+        int kind = tokens.kind(index);
+        if (isOperand(kind)) {
+            return ParseTables.ID;
+        }
+        return kind == Lexer.KEYWORD ? ParseTables.keywordTerminal(tokens.value(index))
+                : ParseTables.charTerminal(tokens.value(index));
+    }
+
+    private void pushValue(int node) {
+        if (valueCount == values.length) {
+            values = Arrays.copyOf(values, valueCount * 2);
+        }
+        values[valueCount++] = node;
+    }
+
+    /**
+     * Builds a statement node of {@code kind} from the value stack: target and
+     * expression for assignments, otherwise the identifiers as a
+     * {@link AstArena#LIST} chain.
+     */
+    private int build(int kind, int index) {
+        int start = tokens.start(index);
+        if (kind == AstArena.LET || kind == AstArena.ASSIGN) {
+            return ast.add(kind, '=', start, values[0], values[1]);
+        }
+        int list = AstArena.NONE;
+        for (int i = valueCount - 1; i >= 0; i--) {
+            list = ast.add(AstArena.LIST, 0, ast.start(values[i]), values[i], list);
+        }
+        int value = kind == AstArena.DECLARATION && tokens.value(index) == Compiler.BEGIN ? 1 : 0;
+        return ast.add(kind, value, start, list, AstArena.NONE);
+    }
+
+    /** Reports a terminal {@code expected} that does not match the token at {@code pos}. */
+    private int mismatch(int expected) {
+        if (expected == ParseTables.EOF) {
+            endOfStatement();
+            return AstArena.NONE;
+        }
+        if (pos < tokens.size() && expected == ParseTables.ID) {
+            return error(pos, "Expected identifier but found: " + tokens.text(pos));
+        }
+        return error(pos - 1, "Expected " + ParseTables.TERMINAL_NAMES[expected] + " after " + tokens.text(pos - 1));
+    }
+
+    /** Reports a token at {@code pos} that no production of {@code nonterminal} starts with. */
+    private int unexpected(int nonterminal, int terminal) {
+        int row = (nonterminal - ParseTables.TERMINALS) * ParseTables.TERMINALS;
+        int expected = -1;
+        int count = 0;
+        for (int t = 0; t < ParseTables.TERMINALS; t++) {
+            if (ParseTables.TABLE[row + t] >= 0 && t != ParseTables.EOF) {
+                expected = t;
+                count++;
+            }
+        }
+        if (pos >= tokens.size()) {
+            return error(pos - 1, count == 1
+                    ? "Expected " + ParseTables.TERMINAL_NAMES[expected] + " after " + tokens.text(pos - 1)
+                    : "Unexpected end of line after " + tokens.text(pos - 1));
+        }
+        if (tokens.kind(pos) == Lexer.SEMICOLON && pos == tokens.size() - 1) {
+            return error(pos, "Semicolon at end of line not allowed");
+        }
+        if (count == 1 && expected == ParseTables.ID) {
+            return error(pos, "Expected identifier but found: " + tokens.text(pos));
+        }
+        if (count == 1 && terminal == ParseTables.ID) {
+            return error(pos, "Missing " + ParseTables.TERMINAL_NAMES[expected] + " before: " + tokens.text(pos));
+        }
+        return error(pos, "Unexpected token: " + tokens.text(pos));
+    }
+
+    /** True if the statement starting at token {@code index} is an assignment. */
+    boolean isAssignment(int index) {
+        if (isKeyword(index, Compiler.LET)) {
+            return true;
+        }
+        return index + 1 < tokens.size() && isOperand(tokens.kind(index))
+                && tokens.kind(index + 1) == Lexer.ASSIGN;
+    }
+
+    /**
+     * Reports an error unless the statement ends at {@code pos}. Only the end
+     * of the line ends a statement; a keyword there is where recovery resumes.
+     */
+    private boolean endOfStatement() {
+        if (pos >= tokens.size()) {
+            return true;
+        }
+        if (tokens.kind(pos) == Lexer.SEMICOLON && pos == tokens.size() - 1) {
+            error(pos, "Semicolon at end of line not allowed");
+        } else {
+            error(pos, "Unexpected token: " + tokens.text(pos));
+        }
+        return false;
+    }
+
+    private int parseExpression() {
+        int operandCount = 0;
+        int operatorCount = 0;
+        boolean expectOperand = true;
+        for (; pos < tokens.size(); pos++) {
+            int kind = tokens.kind(pos);
+            if (expectOperand) {
+                if (isOperand(kind)) {
+                    if (operandCount == operands.length) {
+                        operands = Arrays.copyOf(operands, operandCount * 2);
+                    }
+                    operands[operandCount++] = operand();
+                    expectOperand = false;
+                } else if (kind == Lexer.OPERATOR && tokens.kind(pos - 1) == Lexer.OPERATOR) {
+                    return error(pos - 1, pos, "Two consecutive operators: " + tokens.text(pos - 1) + " " + tokens.text(pos));
+                } else {
+                    return error(pos, "Expected identifier but found: " + tokens.text(pos));
+                }
+            } else if (kind == Lexer.OPERATOR) {
+                int operator = tokens.value(pos);
+                while (operatorCount > 0 && precedence(operators[operatorCount - 1]) >= precedence(operator)) {
+                    operandCount = reduce(operandCount, operators[--operatorCount]);
+                }
+                if (operatorCount == operators.length) {
+                    operators = Arrays.copyOf(operators, operatorCount * 2);
+                }
+                operators[operatorCount++] = operator;
+                expectOperand = true;
+            } else if (kind == Lexer.IDENTIFIER) {
+                return error(pos, "Missing operator before: " + tokens.text(pos));
+            } else {
+                break;
+            }
+        }
+        if (expectOperand) {
+            return error(pos - 1, tokens.kind(pos - 1) == Lexer.OPERATOR
+                    ? "Expression ends with operator: " + tokens.text(pos - 1)
+                    : "Missing expression after =");
+        }
+        while (operatorCount > 0) {
+            operandCount = reduce(operandCount, operators[--operatorCount]);
+        }
+        return operands[0];
+    }
+
+    private int reduce(int operandCount, int operator) {
+        int right = operands[--operandCount];
+        int left = operands[operandCount - 1];
+        operands[operandCount - 1] = left == AstArena.NONE || right == AstArena.NONE
+                ? AstArena.NONE
+                : ast.add(AstArena.BINARY, operator, ast.start(left), left, right);
+        return operandCount;
+    }
+
+    /**
+     * Consumes the operand at {@code pos}, leaving {@code pos} on its last
+     * token. An identifier becomes a leaf. A run of identifiers and rejected
+     * tokens with at least one rejected token in it is a single placeholder
+     * operand, returned as {@link AstArena#NONE}.
+     */
+    private int operand() {
+        int end = pos;
+        boolean rejected = false;
+        while (end < tokens.size() && isOperand(tokens.kind(end))) {
+            rejected |= Lexer.isError(tokens.kind(end));
+            end++;
+        }
+        if (!rejected) {
+            return ast.add(AstArena.IDENTIFIER, tokens.value(pos), tokens.start(pos), AstArena.NONE, AstArena.NONE);
+        }
+        pos = end - 1;
+        return AstArena.NONE;
+    }
+
+    /**
+     * Checks a statement that starts with a rejected word, which runs to the
+     * end of the line: no two operators in a row and no trailing semicolon.
+     */
+    private int parseUnstructured(int index) {
+        for (int i = index; i < tokens.size() - 1; i++) {
+            if (tokens.kind(i) == Lexer.OPERATOR && tokens.kind(i + 1) == Lexer.OPERATOR) {
+                diagnostics.add(Diagnostics.SYNTAX, tokens.start(i), tokens.start(i + 1) + tokens.length(i + 1) - tokens.start(i),
+                        "Two consecutive operators: " + tokens.text(i) + " " + tokens.text(i + 1));
+                while (i + 1 < tokens.size() && tokens.kind(i + 1) == Lexer.OPERATOR) {
+                    i++;
+                }
+            }
+        }
+        int last = tokens.size() - 1;
+        if (tokens.kind(last) == Lexer.SEMICOLON) {
+            diagnostics.add(Diagnostics.SYNTAX, tokens.start(last), tokens.length(last), "Semicolon at end of line not allowed");
+        }
+        pos = tokens.size();
+        return AstArena.NONE;
+    }
+
+    /**
+     * Panic-mode recovery: skips to the next statement keyword after the
+     * start of the failed statement, or to the end of the line.
+     */
+    private void synchronize(int start) {
+        pos = Math.max(pos, start + 1);
+        while (pos < tokens.size() && tokens.kind(pos) != Lexer.KEYWORD) {
+            pos++;
+        }
+    }
+
+    private static boolean isOperand(int kind) {
+        return kind == Lexer.IDENTIFIER || Lexer.isError(kind);
+    }
+
+    private static int precedence(int operator) {
+        return operator == '*' || operator == '/' ? 2 : 1;
+    }
+
+    private boolean isKeyword(int index, int keyword) {
+        return index < tokens.size() && tokens.kind(index) == Lexer.KEYWORD && tokens.value(index) == keyword;
+    }
+
+    private int error(int index, String message) {
+        return error(index, index, message);
+    }
+
+    /** Reports an error spanning tokens {@code first} to {@code last}. */
+    private int error(int first, int last, String message) {
+        diagnostics.add(Diagnostics.SYNTAX, tokens.start(first), tokens.start(last) + tokens.length(last) - tokens.start(first),
+                message);
+        return AstArena.NONE;
+    }
+}
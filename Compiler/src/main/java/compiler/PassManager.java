@@ -0,0 +1,244 @@
+package compiler;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Runs an ordered list of optimization passes over the three-address code of
+ * each statement, in program order. The list comes from an optimization
+ * level ({@link #LEVELS}) or is given by name. Each pass states the
+ * properties of the code it requires and those it establishes; a pass whose
+ * requirements have not been established by the passes before it is skipped
+ * and counted as such, rather than run on code it cannot handle.
+ *
+ * <p>Per pass, the manager counts runs, skips and instructions going in and
+ * coming out. With {@link #setTiming timing} on, it also measures wall time
+ * and bytes allocated by the running thread, which costs two clock and two
+ * allocation-counter reads per pass and statement.
+ */
+final class PassManager {
+
+    /** The code is in SSA form: every variable operand names one definition. */
+    static final int SSA = 1;
+
+    /** Pass names per optimization level, {@code -O0} to {@code -O2}. */
+    static final String[][] LEVELS = {
+        {},
+        {"ssa", "lvn"},
+        {"ssa", "lvn", "dse"}
+    };
+
+    /** One optimization pass. Passes may keep state from one statement to the next. */
+    interface Pass {
+
+        /** Forgets the state of the previous program. */
+        void clear();
+
+        /**
+         * Transforms instructions {@code [from, to)} of {@code code}, one
+         * statement, in place. Returns the new end of the statement, which is
+         * below {@code to} if instructions were removed.
+         */
+        int run(ThreeAddressCode code, int from, int to);
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private String[] names = new String[4];
+    private int[] requires = new int[4];
+    private int[] establishes = new int[4];
+    private Pass[] passes = new Pass[4];
+    private int count;
+
+    private int[] pipeline = new int[0];
+    private String description = "";
+    private boolean timing;
+    private long statements;
+    private long[] runs = new long[4];
+    private long[] skips = new long[4];
+    private long[] nanos = new long[4];
+    private long[] allocated = new long[4];
+    private long[] instructionsIn = new long[4];
+    private long[] instructionsOut = new long[4];
+
+    void register(String name, int requires, int establishes, Pass pass) {
+        if (count == names.length) {
+            int capacity = count * 2;
+            names = Arrays.copyOf(names, capacity);
+            this.requires = Arrays.copyOf(this.requires, capacity);
+            this.establishes = Arrays.copyOf(this.establishes, capacity);
+            passes = Arrays.copyOf(passes, capacity);
+            runs = Arrays.copyOf(runs, capacity);
+            skips = Arrays.copyOf(skips, capacity);
+            nanos = Arrays.copyOf(nanos, capacity);
+            allocated = Arrays.copyOf(allocated, capacity);
+            instructionsIn = Arrays.copyOf(instructionsIn, capacity);
+            instructionsOut = Arrays.copyOf(instructionsOut, capacity);
+        }
+        names[count] = name;
+        this.requires[count] = requires;
+        this.establishes[count] = establishes;
+        passes[count++] = pass;
+    }
+
+    /**
+     * Registers work that the caller runs itself and adds to the statistics
+     * with {@link #record}, under a name of its own so it is not mistaken for
+     * a pass. It cannot be selected and is only reported once it has run.
+     */
+    void registerRecorded(String name) {
+        register(name, 0, 0, null);
+    }
+
+    /** Selects the passes of optimization level {@code level}. */
+    void selectLevel(int level) {
+        select(LEVELS[level]);
+        description = "-O" + level;
+    }
+
+    /** Selects passes by name, in the order given; duplicates run more than once. */
+    void select(String... selected) {
+        int[] indexes = new int[selected.length];
+        for (int i = 0; i < selected.length; i++) {
+            indexes[i] = indexOf(selected[i]);
+            if (passes[indexes[i]] == null) {
+                throw new IllegalArgumentException("Unknown pass: " + selected[i]);
+            }
+        }
+        pipeline = indexes;
+        description = "--passes=" + String.join(",", selected);
+    }
+
+    void setTiming(boolean timing) {
+        this.timing = timing;
+    }
+
+    boolean timing() {
+        return timing;
+    }
+
+    /** True if {@code name} is a pass that can be selected. */
+    boolean isPass(String name) {
+        for (int i = 0; i < count; i++) {
+            if (names[i].equals(name)) {
+                return passes[i] != null;
+            }
+        }
+        return false;
+    }
+
+    /** True if pass {@code name} is in the selected list. */
+    boolean selected(String name) {
+        int pass = indexOf(name);
+        for (int selected : pipeline) {
+            if (selected == pass) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds a run of {@code name}, registered with {@link #registerRecorded},
+     * to the statistics. Time and allocation are only counted
+     * with timing on, as {@link #start()} and {@link #allocated()} give 0 otherwise.
+     */
+    void record(String name, long start, long bytes, long in, long out) {
+        int pass = indexOf(name);
+        runs[pass]++;
+        instructionsIn[pass] += in;
+        instructionsOut[pass] += out;
+        if (timing) {
+            nanos[pass] += System.nanoTime() - start;
+            allocated[pass] += THREADS.getCurrentThreadAllocatedBytes() - bytes;
+        }
+    }
+
+    /** Clock reading to pass to {@link #record} for a run starting now. */
+    long start() {
+        return timing ? System.nanoTime() : 0;
+    }
+
+    /** Allocation counter reading to pass to {@link #record} for a run starting now. */
+    long allocated() {
+        return timing ? THREADS.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    /** Starts a program: clears every pass and the statistics of the last one. */
+    void clear() {
+        for (int i = 0; i < count; i++) {
+            if (passes[i] != null) {
+                passes[i].clear();
+            }
+        }
+        statements = 0;
+        Arrays.fill(runs, 0);
+        Arrays.fill(skips, 0);
+        Arrays.fill(nanos, 0);
+        Arrays.fill(allocated, 0);
+        Arrays.fill(instructionsIn, 0);
+        Arrays.fill(instructionsOut, 0);
+    }
+
+    /**
+     * Runs the selected passes over instructions {@code [from, to)} of
+     * {@code code}, one statement in program order. Returns the new end of
+     * the statement.
+     */
+    int run(ThreeAddressCode code, int from, int to) {
+        statements++;
+        int properties = 0;
+        for (int pass : pipeline) {
+            if ((requires[pass] & ~properties) != 0) {
+                skips[pass]++;
+                continue;
+            }
+            instructionsIn[pass] += to - from;
+            if (timing) {
+                long bytes = THREADS.getCurrentThreadAllocatedBytes();
+                long start = System.nanoTime();
+                to = passes[pass].run(code, from, to);
+                nanos[pass] += System.nanoTime() - start;
+                allocated[pass] += THREADS.getCurrentThreadAllocatedBytes() - bytes;
+            } else {
+                to = passes[pass].run(code, from, to);
+            }
+            instructionsOut[pass] += to - from;
+            runs[pass]++;
+            properties |= establishes[pass];
+        }
+        return to;
+    }
+
+    /** Prints per-pass statistics for the program since the last {@link #clear()}. */
+    void printReport(PrintStream out) {
+        out.println("Pass statistics (" + description + ", " + statements + " statements):");
+        out.println(String.format("  %-10s %10s %10s %12s %14s %14s %14s",
+                "pass", "runs", "skipped", "time (ms)", "instrs in", "instrs out", "allocated"));
+        for (int pass : distinct(pipeline)) {
+            out.println(String.format("  %-10s %10d %10d %12.3f %14d %14d %14d", names[pass], runs[pass], skips[pass],
+                    nanos[pass] / 1e6, instructionsIn[pass], instructionsOut[pass], allocated[pass]));
+        }
+        for (int i = 0; i < count; i++) {
+            if (passes[i] == null && runs[i] > 0) {
+                out.println(String.format("  %-10s %10d %10s %12.3f %14d %14d %14d", names[i], runs[i], "",
+                        nanos[i] / 1e6, instructionsIn[i], instructionsOut[i], allocated[i]));
+            }
+        }
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < count; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown pass: " + name);
+    }
+
+    private static int[] distinct(int[] pipeline) {
+        return Arrays.stream(pipeline).distinct().toArray();
+    }
+}
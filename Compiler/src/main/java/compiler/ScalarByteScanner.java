@@ -0,0 +1,59 @@
+package compiler;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+final class ScalarByteScanner implements ByteScanner {
+
+    @Override
+    public int[] lineStarts(ByteBuffer source, int from, int to) {
+        if (from >= to) {
+            return new int[0];
+        }
+        int[] starts = new int[16];
+        int count = 0;
+        starts[count++] = from;
+        for (int i = from; i < to - 1; i++) {
+            if (source.get(i) == '\n') {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+                starts[count++] = i + 1;
+            }
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    @Override
+    public int countNewlines(ByteBuffer source, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (source.get(i) == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void delimiters(ByteBuffer source, int from, int to, long[] spaces, long[] breaks) {
+        int words = (to - from + 63) >>> 6;
+        Arrays.fill(spaces, 0, words, 0L);
+        Arrays.fill(breaks, 0, words, 0L);
+        mark(source, from, from, to, spaces, breaks);
+    }
+
+    /** Marks delimiter bytes of {@code source[start, to)} into bitmaps indexed from {@code from}. */
+    static void mark(ByteBuffer source, int from, int start, int to, long[] spaces, long[] breaks) {
+        for (int i = start; i < to; i++) {
+            byte b = source.get(i);
+            int bit = i - from;
+            if (Lexer.isSpace(b)) {
+                spaces[bit >>> 6] |= 1L << bit;
+                breaks[bit >>> 6] |= 1L << bit;
+            } else if (Lexer.isSingle(b)) {
+                breaks[bit >>> 6] |= 1L << bit;
+            }
+        }
+    }
+}
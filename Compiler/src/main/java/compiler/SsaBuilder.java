@@ -0,0 +1,70 @@
+package compiler;
+
+import java.util.Arrays;
+
+/**
+ * Puts three-address code into static single assignment form, one statement
+ * at a time in program order: every assignment to a variable creates a new
+ * version ({@code B_2}) and every read names the version current at that
+ * point, so two operands are the same value exactly when they are the same
+ * int. Temporaries are assigned once already and are left alone.
+ *
+ * <p>Programs are straight-line code, so the current version of each
+ * variable is all the state there is and no phi is ever needed. With control
+ * flow, a block with two predecessors would start with a
+ * {@link ThreeAddressCode#PHI} for each variable whose version differs at
+ * the ends of the predecessors, and its renaming would continue from the
+ * phi's version.
+ *
+ * <p>Versions wrap around after {@link ThreeAddressCode#MAX_VERSION}. In
+ * straight-line code only the current version of a variable is read, so a
+ * reused number cannot be confused with a live value.
+ */
+final class SsaBuilder implements PassManager.Pass {
+
+    private final int[] versions = new int[SymbolInterner.LETTERS];
+
+    @Override
+    public void clear() {
+        Arrays.fill(versions, 0);
+    }
+
+    /** Renames instructions {@code [from, to)} of {@code code} in place. */
+    @Override
+    public int run(ThreeAddressCode code, int from, int to) {
+        for (int i = from; i < to; i++) {
+            code.setLeft(i, current(code.left(i)));
+            code.setRight(i, current(code.right(i)));
+            int dest = code.dest(i);
+            if (ThreeAddressCode.isVariable(dest)) {
+                int symbol = ThreeAddressCode.symbol(dest);
+                int version = versions[symbol] == ThreeAddressCode.MAX_VERSION ? 1 : versions[symbol] + 1;
+                versions[symbol] = version;
+                code.setDest(i, ThreeAddressCode.variable(symbol, version));
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Takes instructions {@code [from, to)} back out of SSA form. Without phis
+     * and with only current versions read, this is dropping the versions.
+     */
+    static void destruct(ThreeAddressCode code, int from, int to) {
+        for (int i = from; i < to; i++) {
+            code.setDest(i, unversioned(code.dest(i)));
+            code.setLeft(i, unversioned(code.left(i)));
+            code.setRight(i, unversioned(code.right(i)));
+        }
+    }
+
+    private int current(int operand) {
+        return ThreeAddressCode.isVariable(operand)
+                ? ThreeAddressCode.variable(ThreeAddressCode.symbol(operand), versions[ThreeAddressCode.symbol(operand)])
+                : operand;
+    }
+
+    private static int unversioned(int operand) {
+        return ThreeAddressCode.isVariable(operand) ? ThreeAddressCode.symbol(operand) : operand;
+    }
+}
@@ -0,0 +1,124 @@
+package compiler;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Maps identifiers to dense int ids so later phases compare and index by int.
+ * Single-letter identifiers, the only kind the language allows today, have
+ * fixed ids 0-51 ({@code A-Z} then {@code a-z}) and never touch shared state,
+ * so chunks compiled in parallel agree on them. Longer identifiers fall back
+ * to an open-addressing hash table and get ids from 52 upwards.
+ */
+final class SymbolInterner {
+
+    static final int LETTERS = 52;
+
+    private byte[][] names = new byte[16][];
+    private int[] table = new int[32];
+    private int size = LETTERS;
+
+    SymbolInterner() {
+        Arrays.fill(table, -1);
+    }
+
+    int intern(ByteBuffer source, int start, int length) {
+        if (length == 1) {
+            int id = letterId(source.get(start));
+            if (id >= 0) {
+                return id;
+            }
+        }
+        return internLong(source, start, length);
+    }
+
+    synchronized String name(int id) {
+        if (id < LETTERS) {
+            return String.valueOf((char) (id < 26 ? 'A' + id : 'a' + id - 26));
+        }
+        return new String(names[id - LETTERS], StandardCharsets.UTF_8);
+    }
+
+    static int letterId(byte b) {
+        if (b >= 'A' && b <= 'Z') {
+            return b - 'A';
+        }
+        if (b >= 'a' && b <= 'z') {
+            return b - 'a' + 26;
+        }
+        return -1;
+    }
+
+    private synchronized int internLong(ByteBuffer source, int start, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = step(hash, source.get(start + i));
+        }
+        int mask = table.length - 1;
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            int id = table[slot];
+            if (id < 0) {
+                return insert(slot, source, start, length);
+            }
+            if (matches(names[id - LETTERS], source, start, length)) {
+                return id;
+            }
+        }
+    }
+
+    private int insert(int slot, ByteBuffer source, int start, int length) {
+        byte[] name = new byte[length];
+        source.get(start, name);
+        int id = size++;
+        if (id - LETTERS == names.length) {
+            names = Arrays.copyOf(names, names.length * 2);
+        }
+        names[id - LETTERS] = name;
+        table[slot] = id;
+        if ((size - LETTERS) * 2 > table.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    private void rehash() {
+        int[] old = table;
+        table = new int[old.length * 2];
+        Arrays.fill(table, -1);
+        int mask = table.length - 1;
+        for (int id : old) {
+            if (id >= 0) {
+                int hash = 0;
+                for (byte b : names[id - LETTERS]) {
+                    hash = step(hash, b);
+                }
+                int slot = mix(hash) & mask;
+                while (table[slot] >= 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = id;
+            }
+        }
+    }
+
+    private static boolean matches(byte[] name, ByteBuffer source, int start, int length) {
+        if (name.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name[i] != source.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int step(int hash, byte b) {
+        return hash * 31 + b;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,137 @@
+package compiler;
+
+/**
+ * Variables declared and variables assigned so far in a program, as bitsets
+ * of symbol ids. Identifiers are single letters, so every id is below
+ * {@link SymbolInterner#LETTERS} and each set is one {@code long}: checking
+ * all the identifiers of a line is a single AND.
+ *
+ * <p>The assigned set is the state of a forward dataflow pass over the
+ * statements: a variable is definitely assigned after a statement if it was
+ * before it or the statement assigns it. Programs are straight-line code, so
+ * the transfer function is an OR with the statement's definitions, and a
+ * stretch of program, such as a parallel chunk, composes into one OR with the
+ * union of its definitions ({@link #include}).
+ */
+final class SymbolTable {
+
+    private long declared;
+    private long assigned;
+
+    void clear() {
+        declared = 0;
+        assigned = 0;
+    }
+
+    long declared() {
+        return declared;
+    }
+
+    long assigned() {
+        return assigned;
+    }
+
+    /** Adds the declarations and assignments of {@code other}, such as the chunks before this one. */
+    void include(SymbolTable other) {
+        declared |= other.declared;
+        assigned |= other.assigned;
+    }
+
+    void declare(long ids) {
+        declared |= ids;
+    }
+
+    /**
+     * Records a declaration line's identifiers ({@code count} symbol ids with
+     * their source offsets, in order), reporting any already declared.
+     */
+    void declare(int[] ids, int[] starts, int count, Diagnostics diagnostics, SymbolInterner symbols) {
+        for (int i = 0; i < count; i++) {
+            long bit = bit(ids[i]);
+            if ((declared & bit) != 0) {
+                String name = symbols.name(ids[i]);
+                diagnostics.add(Diagnostics.SEMANTIC, starts[i], name.length(), "Duplicate declaration: " + name);
+            }
+            declared |= bit;
+        }
+    }
+
+    void assign(long ids) {
+        assigned |= ids;
+    }
+
+    /**
+     * Reports the first read of each variable among {@code ids[from, count)}
+     * that is not definitely assigned. Undeclared variables are left to
+     * {@link #checkDeclared}.
+     */
+    void checkAssigned(int[] ids, int[] starts, int from, int count, String message,
+            Diagnostics diagnostics, SymbolInterner symbols) {
+        long read = 0;
+        for (int i = from; i < count; i++) {
+            read |= bit(ids[i]);
+        }
+        long unassigned = read & declared & ~assigned;
+        for (int i = from; unassigned != 0 && i < count; i++) {
+            long bit = bit(ids[i]);
+            if ((unassigned & bit) != 0) {
+                String name = symbols.name(ids[i]);
+                diagnostics.add(Diagnostics.SEMANTIC, starts[i], name.length(), message + name);
+                unassigned &= ~bit;
+            }
+        }
+    }
+
+    /** Reports the first use of each identifier of a line that is not declared. */
+    void checkDeclared(int[] ids, int[] starts, int count, Diagnostics diagnostics, SymbolInterner symbols) {
+        long used = 0;
+        for (int i = 0; i < count; i++) {
+            used |= bit(ids[i]);
+        }
+        long undeclared = used & ~declared;
+        for (int i = 0; undeclared != 0 && i < count; i++) {
+            long bit = bit(ids[i]);
+            if ((undeclared & bit) != 0) {
+                String name = symbols.name(ids[i]);
+                diagnostics.add(Diagnostics.SEMANTIC, starts[i], name.length(), "Undeclared variable: " + name);
+                undeclared &= ~bit;
+            }
+        }
+    }
+
+    /** True if the line's tokens form a declaration, which is decided by its first keyword alone. */
+    static boolean isDeclaration(TokenStream tokens) {
+        return !tokens.isEmpty() && tokens.kind(0) == Lexer.KEYWORD
+                && (tokens.value(0) == Compiler.BEGIN || tokens.value(0) == Compiler.INTEGER);
+    }
+
+    /**
+     * Variables a line assigns: every identifier of an INPUT, or the target of
+     * an assignment. Decided from the tokens alone, so a statement with
+     * errors still defines its target and does not cause follow-on errors.
+     */
+    static long definitions(TokenStream tokens) {
+        if (tokens.isEmpty()) {
+            return 0;
+        }
+        if (tokens.kind(0) == Lexer.KEYWORD && tokens.value(0) == Compiler.INPUT) {
+            long ids = 0;
+            for (int i = 1; i < tokens.size(); i++) {
+                if (tokens.kind(i) == Lexer.IDENTIFIER) {
+                    ids |= bit(tokens.value(i));
+                }
+            }
+            return ids;
+        }
+        int target = tokens.kind(0) == Lexer.KEYWORD && tokens.value(0) == Compiler.LET ? 1 : 0;
+        if (target + 1 < tokens.size() && tokens.kind(target) == Lexer.IDENTIFIER
+                && tokens.kind(target + 1) == Lexer.ASSIGN) {
+            return bit(tokens.value(target));
+        }
+        return 0;
+    }
+
+    static long bit(int id) {
+        return 1L << id;
+    }
+}
@@ -0,0 +1,282 @@
+package compiler;
+
+import java.util.Arrays;
+
+/**
+ * Three-address code for a run of statements, stored like {@link AstArena}: an
+ * instruction is an index into parallel int arrays holding its opcode,
+ * destination and two source operands, {@code dest = left op right}.
+ * Operands are ints too: a variable is its symbol id plus its SSA version
+ * times {@link #VERSIONS} (version 0 before {@link SsaBuilder} has run), a
+ * temporary is negative ({@code t1} is -1), and an unused operand is
+ * {@link #NONE}. Temporaries are numbered densely from {@code t1} within
+ * each statement, in the order their instructions are added. The code is
+ * only turned into text when a phase prints it.
+ */
+final class ThreeAddressCode {
+
+    static final int NONE = Integer.MIN_VALUE;
+    /** Symbol ids are below this, so the low bits of a variable operand are its symbol. */
+    static final int VERSIONS = 64;
+    static final int MAX_VERSION = Integer.MAX_VALUE / VERSIONS;
+
+    /** {@code dest = left} */
+    static final int COPY = 0;
+    static final int ADD = 1;
+    static final int SUB = 2;
+    static final int MUL = 3;
+    static final int DIV = 4;
+    /** Reads a value into {@code dest}. */
+    static final int INPUT = 5;
+    /** Writes {@code left}. */
+    static final int WRITE = 6;
+    /**
+     * {@code dest = phi(left, right)}, choosing by the predecessor control
+     * came from. Reserved for control flow; straight-line code never has one.
+     */
+    static final int PHI = 7;
+
+    private static final String[] OPERATORS = {null, " + ", " - ", " * ", " / ", null, null, null};
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] opcodes = new int[INITIAL_CAPACITY];
+    private int[] dests = new int[INITIAL_CAPACITY];
+    private int[] lefts = new int[INITIAL_CAPACITY];
+    private int[] rights = new int[INITIAL_CAPACITY];
+    private int size;
+    private int temps;
+    private int[] walk = new int[INITIAL_CAPACITY];
+    private int[] operands = new int[INITIAL_CAPACITY];
+    private int[] renumbering = new int[INITIAL_CAPACITY];
+
+    void reset() {
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int add(int opcode, int dest, int left, int right) {
+        if (size == opcodes.length) {
+            int capacity = size * 2;
+            opcodes = Arrays.copyOf(opcodes, capacity);
+            dests = Arrays.copyOf(dests, capacity);
+            lefts = Arrays.copyOf(lefts, capacity);
+            rights = Arrays.copyOf(rights, capacity);
+        }
+        opcodes[size] = opcode;
+        dests[size] = dest;
+        lefts[size] = left;
+        rights[size] = right;
+        return size++;
+    }
+
+    int opcode(int instruction) {
+        return opcodes[instruction];
+    }
+
+    int dest(int instruction) {
+        return dests[instruction];
+    }
+
+    int left(int instruction) {
+        return lefts[instruction];
+    }
+
+    int right(int instruction) {
+        return rights[instruction];
+    }
+
+    void set(int instruction, int opcode, int dest, int left, int right) {
+        opcodes[instruction] = opcode;
+        dests[instruction] = dest;
+        lefts[instruction] = left;
+        rights[instruction] = right;
+    }
+
+    /** Appends instructions {@code [from, to)} of {@code other}. */
+    void addAll(ThreeAddressCode other, int from, int to) {
+        for (int i = from; i < to; i++) {
+            add(other.opcodes[i], other.dests[i], other.lefts[i], other.rights[i]);
+        }
+    }
+
+    /** Removes the first {@code count} instructions, moving the rest to the front. */
+    void removeFirst(int count) {
+        int rest = size - count;
+        System.arraycopy(opcodes, count, opcodes, 0, rest);
+        System.arraycopy(dests, count, dests, 0, rest);
+        System.arraycopy(lefts, count, lefts, 0, rest);
+        System.arraycopy(rights, count, rights, 0, rest);
+        size = rest;
+    }
+
+    void setDest(int instruction, int dest) {
+        dests[instruction] = dest;
+    }
+
+    void setLeft(int instruction, int left) {
+        lefts[instruction] = left;
+    }
+
+    void setRight(int instruction, int right) {
+        rights[instruction] = right;
+    }
+
+    /** Starts a statement: its temporaries are numbered from {@code t1} again. */
+    void startStatement() {
+        temps = 0;
+    }
+
+    int newTemp() {
+        return -++temps;
+    }
+
+    /**
+     * Numbers the temporaries of instructions {@code [from, to)}, one
+     * statement, densely from {@code t1} again after some were removed.
+     */
+    void renumberTemps(int from, int to) {
+        int next = 0;
+        for (int i = from; i < to; i++) {
+            if (isTemp(lefts[i])) {
+                lefts[i] = renumbering[-lefts[i]];
+            }
+            if (isTemp(rights[i])) {
+                rights[i] = renumbering[-rights[i]];
+            }
+            if (isTemp(dests[i])) {
+                if (-dests[i] >= renumbering.length) {
+                    renumbering = Arrays.copyOf(renumbering, Math.max(-dests[i] + 1, renumbering.length * 2));
+                }
+                renumbering[-dests[i]] = -++next;
+                dests[i] = -next;
+            }
+        }
+    }
+
+    static boolean isBinary(int opcode) {
+        return opcode >= ADD && opcode <= DIV;
+    }
+
+    static boolean isCommutative(int opcode) {
+        return opcode == ADD || opcode == MUL;
+    }
+
+    static boolean isTemp(int operand) {
+        return operand < 0 && operand != NONE;
+    }
+
+    static boolean isVariable(int operand) {
+        return operand >= 0;
+    }
+
+    static int variable(int symbol, int version) {
+        return version * VERSIONS + symbol;
+    }
+
+    static int symbol(int variable) {
+        return variable % VERSIONS;
+    }
+
+    static int version(int variable) {
+        return variable / VERSIONS;
+    }
+
+    /**
+     * Adds the instructions that evaluate the expression under {@code root}
+     * into {@code dest}: one per binary node, in post-order, with the root's
+     * result going straight to {@code dest} and every other result to a new
+     * temporary. Walks with an explicit stack, since expression trees can be
+     * millions of nodes deep.
+     */
+    void addExpression(AstArena ast, int root, int dest) {
+        if (ast.kind(root) == AstArena.IDENTIFIER) {
+            add(COPY, dest, ast.value(root), NONE);
+            return;
+        }
+        int top = 0;
+        int operandCount = 0;
+        walk[top++] = root;
+        while (top > 0) {
+            int item = walk[--top];
+            if (item < 0) {
+                // both operands are done: ~item is the binary node to emit
+                int node = ~item;
+                int right = operands[--operandCount];
+                int left = operands[--operandCount];
+                int target = node == root ? dest : newTemp();
+                add(binaryOpcode(ast.value(node)), target, left, right);
+                operands[operandCount++] = target;
+            } else if (ast.kind(item) == AstArena.IDENTIFIER) {
+                if (operandCount == operands.length) {
+                    operands = Arrays.copyOf(operands, operandCount * 2);
+                }
+                operands[operandCount++] = ast.value(item);
+            } else {
+                if (top + 3 > walk.length) {
+                    walk = Arrays.copyOf(walk, walk.length * 2 + 3);
+                }
+                walk[top++] = ~item;
+                walk[top++] = ast.right(item);
+                walk[top++] = ast.left(item);
+            }
+        }
+    }
+
+    /** Renders instructions {@code [from, to)} separated by {@code "; "}. */
+    String render(int from, int to, SymbolInterner symbols) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            if (i > from) {
+                sb.append("; ");
+            }
+            switch (opcodes[i]) {
+                case INPUT:
+                    appendOperand(sb.append("INPUT "), dests[i], symbols);
+                    break;
+                case WRITE:
+                    appendOperand(sb.append("WRITE "), lefts[i], symbols);
+                    break;
+                case PHI:
+                    appendOperand(sb, dests[i], symbols);
+                    appendOperand(sb.append(" = phi("), lefts[i], symbols);
+                    appendOperand(sb.append(", "), rights[i], symbols);
+                    sb.append(')');
+                    break;
+                default:
+                    appendOperand(sb, dests[i], symbols);
+                    appendOperand(sb.append(" = "), lefts[i], symbols);
+                    if (opcodes[i] != COPY) {
+                        appendOperand(sb.append(OPERATORS[opcodes[i]]), rights[i], symbols);
+                    }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void appendOperand(StringBuilder sb, int operand, SymbolInterner symbols) {
+        if (isTemp(operand)) {
+            sb.append('t').append(-operand);
+        } else {
+            sb.append(symbols.name(symbol(operand)));
+            if (version(operand) > 0) {
+                sb.append('_').append(version(operand));
+            }
+        }
+    }
+
+    private static int binaryOpcode(int operator) {
+        switch (operator) {
+            case '+':
+                return ADD;
+            case '-':
+                return SUB;
+            case '*':
+                return MUL;
+            default:
+                return DIV;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package compiler;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Packed token list: parallel int arrays hold each token's kind, start
+ * offset, length and value (see {@link Lexer#value()}), and all tokens
+ * share one source buffer. Token text is only materialised when
+ * {@link #text(int)} is asked for it.
+ */
+final class TokenStream {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private ByteBuffer source;
+    private int[] kinds = new int[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int[] values = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /** Clears the stream for reuse over a new source buffer. */
+    void reset(ByteBuffer source) {
+        this.source = source;
+        this.size = 0;
+    }
+
+    void add(int kind, int start, int length, int value) {
+        if (size == kinds.length) {
+            int capacity = size * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        kinds[size] = kind;
+        starts[size] = start;
+        lengths[size] = length;
+        values[size] = value;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int kind(int index) {
+        return kinds[index];
+    }
+
+    int start(int index) {
+        return starts[index];
+    }
+
+    int length(int index) {
+        return lengths[index];
+    }
+
+    int value(int index) {
+        return values[index];
+    }
+
+    String text(int index) {
+        return slice(source, starts[index], starts[index] + lengths[index]);
+    }
+
+    /** Decodes {@code source[start, end)} as UTF-8. */
+    static String slice(ByteBuffer source, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        source.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(text(i));
+        }
+        return sb.append(']').toString();
+    }
+}
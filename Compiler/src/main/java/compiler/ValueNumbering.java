@@ -0,0 +1,218 @@
+package compiler;
+
+import java.util.Arrays;
+
+/**
+ * Hash-based value numbering over SSA code, carried from one statement to
+ * the next so it removes repeated computations within and across
+ * statements. Every value gets a number: each variable and temporary holds
+ * the number of what was last stored in it, and a binary operation is
+ * looked up by its opcode and operand numbers, with the operands of
+ * {@code +} and {@code *} in a fixed order so {@code a + b} and
+ * {@code b + a} meet. An operation whose number some operand still holds is
+ * not computed again: a temporary is dropped and its uses read the holder,
+ * a variable is assigned a copy of it.
+ *
+ * <p>A holder is only used while it still holds the number, so an
+ * assignment in between, which gives the variable a new number, invalidates
+ * it, and so does the end of the statement for a temporary: temporaries are
+ * numbered per statement, so a later statement cannot read one, and a value
+ * shared by two statements is only reused if a variable holds it. A
+ * temporary left unread once its uses read a holder instead is removed.
+ * Entries are kept
+ * in an open-addressing table, which is emptied when it reaches
+ * {@link #MAX_ENTRIES} so memory stays bounded on large programs: at most
+ * twice that many slots of five ints, under 3 MiB.
+ */
+final class ValueNumbering implements PassManager.Pass {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_ENTRIES = 1 << 16;
+
+    private int[] opcodes = new int[INITIAL_CAPACITY];
+    private int[] lefts = new int[INITIAL_CAPACITY];
+    private int[] rights = new int[INITIAL_CAPACITY];
+    /** Value number of each entry; 0 marks an empty slot. */
+    private int[] numbers = new int[INITIAL_CAPACITY];
+    private int[] holders = new int[INITIAL_CAPACITY];
+    private int entries;
+    private int nextNumber = 1;
+
+    private final int[] variableNumbers = new int[SymbolInterner.LETTERS];
+    /** Current SSA operand of each variable, for reading it as a holder. */
+    private final int[] variables = new int[SymbolInterner.LETTERS];
+    private int[] tempNumbers = new int[16];
+    /** What each temporary of the statement is read as: itself, or the holder of its value. */
+    private int[] replacements = new int[16];
+    private int temps;
+    /** Removes the temporaries whose reads were all replaced. */
+    private final DeadStoreElimination unusedTemps = new DeadStoreElimination();
+
+    @Override
+    public void clear() {
+        Arrays.fill(numbers, 0);
+        entries = 0;
+        nextNumber = 1;
+        Arrays.fill(variableNumbers, 0);
+    }
+
+    @Override
+    public int run(ThreeAddressCode code, int from, int to) {
+        // the temporaries of the previous statement no longer hold anything
+        Arrays.fill(tempNumbers, 0, temps + 1, 0);
+        temps = 0;
+        boolean replaced = false;
+        int kept = from;
+        for (int i = from; i < to; i++) {
+            int opcode = code.opcode(i);
+            int dest = code.dest(i);
+            int left = read(code.left(i));
+            int right = read(code.right(i));
+            if (ThreeAddressCode.isBinary(opcode)) {
+                int entry = find(opcode, numberOf(left), numberOf(right));
+                int number = numbers[entry];
+                int holder = holders[entry];
+                if (holds(holder, number)) {
+                    holder = ThreeAddressCode.isVariable(holder) ? variables[ThreeAddressCode.symbol(holder)] : holder;
+                    replaced = true;
+                    if (ThreeAddressCode.isTemp(dest)) {
+                        define(dest, number);
+                        replacements[-dest] = holder;
+                        continue;
+                    }
+                    opcode = ThreeAddressCode.COPY;
+                    left = holder;
+                    right = ThreeAddressCode.NONE;
+                } else {
+                    holders[entry] = dest;
+                }
+                define(dest, number);
+            } else if (opcode == ThreeAddressCode.COPY) {
+                define(dest, numberOf(left));
+            } else if (dest != ThreeAddressCode.NONE) {
+                define(dest, nextNumber++);
+            }
+            code.set(kept++, opcode, dest, left, right);
+        }
+        if (!replaced) {
+            return kept;
+        }
+        code.renumberTemps(from, kept);
+        return unusedTemps.run(code, from, kept);
+    }
+
+    private int read(int operand) {
+        return ThreeAddressCode.isTemp(operand) ? replacements[-operand] : operand;
+    }
+
+    private void define(int operand, int number) {
+        if (ThreeAddressCode.isTemp(operand)) {
+            int temp = -operand;
+            if (temp >= tempNumbers.length) {
+                tempNumbers = Arrays.copyOf(tempNumbers, Math.max(temp + 1, tempNumbers.length * 2));
+                replacements = Arrays.copyOf(replacements, tempNumbers.length);
+            }
+            tempNumbers[temp] = number;
+            replacements[temp] = operand;
+            temps = Math.max(temps, temp);
+        } else {
+            int symbol = ThreeAddressCode.symbol(operand);
+            variableNumbers[symbol] = number;
+            variables[symbol] = operand;
+        }
+    }
+
+    /** Value number of a source operand; a variable read before any assignment gets a new one. */
+    private int numberOf(int operand) {
+        if (ThreeAddressCode.isTemp(operand)) {
+            return tempNumbers[-operand];
+        }
+        int symbol = ThreeAddressCode.symbol(operand);
+        if (variableNumbers[symbol] == 0) {
+            define(operand, nextNumber++);
+        }
+        return variableNumbers[symbol];
+    }
+
+    private boolean holds(int holder, int number) {
+        if (holder == ThreeAddressCode.NONE) {
+            return false;
+        }
+        if (ThreeAddressCode.isTemp(holder)) {
+            return -holder <= temps && tempNumbers[-holder] == number;
+        }
+        return variableNumbers[ThreeAddressCode.symbol(holder)] == number;
+    }
+
+    /** The entry for an operation, added with a new value number and no holder if it is not there yet. */
+    private int find(int opcode, int left, int right) {
+        if (ThreeAddressCode.isCommutative(opcode) && left > right) {
+            int swap = left;
+            left = right;
+            right = swap;
+        }
+        int mask = numbers.length - 1;
+        for (int slot = hash(opcode, left, right) & mask; ; slot = (slot + 1) & mask) {
+            if (numbers[slot] == 0) {
+                if (entries == MAX_ENTRIES) {
+                    Arrays.fill(numbers, 0);
+                    entries = 0;
+                } else if ((entries + 1) * 2 > numbers.length) {
+                    rehash();
+                }
+                return insert(opcode, left, right);
+            }
+            if (opcodes[slot] == opcode && lefts[slot] == left && rights[slot] == right) {
+                return slot;
+            }
+        }
+    }
+
+    private int insert(int opcode, int left, int right) {
+        int mask = numbers.length - 1;
+        int slot = hash(opcode, left, right) & mask;
+        while (numbers[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        opcodes[slot] = opcode;
+        lefts[slot] = left;
+        rights[slot] = right;
+        numbers[slot] = nextNumber++;
+        holders[slot] = ThreeAddressCode.NONE;
+        entries++;
+        return slot;
+    }
+
+    private void rehash() {
+        int[] oldOpcodes = opcodes;
+        int[] oldLefts = lefts;
+        int[] oldRights = rights;
+        int[] oldNumbers = numbers;
+        int[] oldHolders = holders;
+        int capacity = oldNumbers.length * 2;
+        opcodes = new int[capacity];
+        lefts = new int[capacity];
+        rights = new int[capacity];
+        numbers = new int[capacity];
+        holders = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldNumbers.length; i++) {
+            if (oldNumbers[i] != 0) {
+                int slot = hash(oldOpcodes[i], oldLefts[i], oldRights[i]) & mask;
+                while (numbers[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                opcodes[slot] = oldOpcodes[i];
+                lefts[slot] = oldLefts[i];
+                rights[slot] = oldRights[i];
+                numbers[slot] = oldNumbers[i];
+                holders[slot] = oldHolders[i];
+            }
+        }
+    }
+
+    private static int hash(int opcode, int left, int right) {
+        int hash = ((opcode * 31 + left) * 31 + right) * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
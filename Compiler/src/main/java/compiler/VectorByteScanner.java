@@ -0,0 +1,92 @@
+package compiler;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link ByteScanner} that compares a whole vector of bytes at a time and
+ * turns the resulting lane masks straight into bitmap words. Only loaded by
+ * {@link ByteScanner#create()} when the incubator module is available.
+ * The byte sets below must match {@link Lexer#isSpace} and {@link Lexer#isSingle}.
+ */
+final class VectorByteScanner implements ByteScanner {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    private final ScalarByteScanner tail = new ScalarByteScanner();
+
+    @Override
+    public int[] lineStarts(ByteBuffer source, int from, int to) {
+        if (from >= to) {
+            return new int[0];
+        }
+        int[] starts = new int[16];
+        int count = 0;
+        starts[count++] = from;
+        int last = to - 1;
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(last - from); i < bound; i += LANES) {
+            long bits = newlines(source, i).toLong();
+            while (bits != 0) {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+                starts[count++] = i + Long.numberOfTrailingZeros(bits) + 1;
+                bits &= bits - 1;
+            }
+        }
+        for (; i < last; i++) {
+            if (source.get(i) == '\n') {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+                starts[count++] = i + 1;
+            }
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    @Override
+    public int countNewlines(ByteBuffer source, int from, int to) {
+        int count = 0;
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += LANES) {
+            count += newlines(source, i).trueCount();
+        }
+        return count + tail.countNewlines(source, i, to);
+    }
+
+    @Override
+    public void delimiters(ByteBuffer source, int from, int to, long[] spaces, long[] breaks) {
+        int words = (to - from + 63) >>> 6;
+        Arrays.fill(spaces, 0, words, 0L);
+        Arrays.fill(breaks, 0, words, 0L);
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += LANES) {
+            ByteVector v = ByteVector.fromByteBuffer(SPECIES, source, i, ByteOrder.nativeOrder());
+            // ' ' and '\t' .. '\r'
+            VectorMask<Byte> space = v.eq((byte) ' ')
+                    .or(v.compare(VectorOperators.GE, (byte) '\t').and(v.compare(VectorOperators.LE, (byte) '\r')));
+            // '*' '+' ',' '-' are contiguous, then '/', ';' and '='
+            VectorMask<Byte> single = v.compare(VectorOperators.GE, (byte) '*').and(v.compare(VectorOperators.LE, (byte) '-'))
+                    .or(v.eq((byte) '/'))
+                    .or(v.eq((byte) ';'))
+                    .or(v.eq((byte) '='));
+            int bit = i - from;
+            long spaceBits = space.toLong();
+            spaces[bit >>> 6] |= spaceBits << bit;
+            breaks[bit >>> 6] |= (spaceBits | single.toLong()) << bit;
+        }
+        ScalarByteScanner.mark(source, from, i, to, spaces, breaks);
+    }
+
+    private static VectorMask<Byte> newlines(ByteBuffer source, int offset) {
+        return ByteVector.fromByteBuffer(SPECIES, source, offset, ByteOrder.nativeOrder()).eq((byte) '\n');
+    }
+}
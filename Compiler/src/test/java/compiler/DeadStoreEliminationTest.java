@@ -0,0 +1,120 @@
+package compiler;
+
+import static compiler.ValueNumberingTest.optimized;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class DeadStoreEliminationTest {
+
+    private static final String DECLARE = "BEGIN INTEGER A, B, C, G, M, N\nINPUT A, B, C\n";
+    private static final String REMOVED = "removed, no value reaches a WRITE";
+    /** A line with one error of each lexical kind, which prints about 500 bytes. */
+    private static final String ERROR_LINE = "temp = <s%**h - j / w +d +*$&;";
+
+    @Test
+    void storeNeverWrittenIsRemoved() {
+        String output = TestPrograms.compile(DECLARE + "LET G = A + C\nM = A/B+C\nWRITE M\nEND\n", 2);
+        assertEquals(REMOVED, optimized(output, 3));
+        assertEquals("t1 = A_1 / B_1; M_1 = t1 + C_1", optimized(output, 4));
+    }
+
+    @Test
+    void overwrittenStoreAndWhatFeedsOnlyItAreRemoved() {
+        String output = TestPrograms.compile(DECLARE + "N = A * B\nM = N - C\nM = A\nWRITE M\nEND\n", 2);
+        assertEquals(REMOVED, optimized(output, 3));
+        assertEquals(REMOVED, optimized(output, 4));
+        assertEquals("M_2 = A_1", optimized(output, 5));
+    }
+
+    @Test
+    void inputIsKeptWhenUnused() {
+        String output = TestPrograms.compile(DECLARE + "INPUT G\nWRITE A\nEND\n", 2);
+        assertEquals("INPUT G_1", optimized(output, 3));
+    }
+
+    @Test
+    void storeReadAfterTheWindowIsKept() {
+        StringBuilder program = new StringBuilder(DECLARE + "M = A + B\n");
+        for (int i = 0; i < 10_000; i++) {
+            program.append(i % 2 == 0 ? "N = A * C\n" : "WRITE N\n");
+        }
+        String output = TestPrograms.compile(program.append("WRITE M\nEND\n").toString(), 2);
+        assertEquals("M_1 = A_1 + B_1", optimized(output, 3));
+    }
+
+    @Test
+    void windowsResolvedEarlyKeepOutputInOrder() {
+        for (long seed = 1; seed <= 4; seed++) {
+            String program = withErrorLines(TestPrograms.random(seed, 10_000, 12), seed);
+            String unoptimized = TestPrograms.compile(program, 0);
+            String optimized = TestPrograms.compile(program, 2);
+            assertTrue(optimized.contains(REMOVED), "seed " + seed);
+            assertEquals(TestPrograms.run(unoptimized), TestPrograms.run(optimized), "seed " + seed);
+            assertEquals(lines(unoptimized), lines(optimized), "seed " + seed);
+        }
+    }
+
+    @Test
+    void streamAndParallelOutputMatchSequential() throws IOException {
+        for (long seed = 1; seed <= 4; seed++) {
+            String program = withErrorLines(TestPrograms.random(seed, 10_000, 12), seed);
+            for (int level = 0; level <= 2; level++) {
+                String sequential = TestPrograms.compile(program, level);
+                assertEquals(sequential, compileStream(program, level), "--stream -O" + level + ", seed " + seed);
+                assertEquals(sequential, compileParallel(program, level), "--parallel -O" + level + ", seed " + seed);
+            }
+        }
+    }
+
+    /**
+     * Inserts a run of 3000 error lines, over 1 MiB of output, after line
+     * 2000, so the dead-store window is resolved early for held output.
+     */
+    private static String withErrorLines(String program, long seed) {
+        String[] lines = program.split("\n", -1);
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < lines.length; i++) {
+            if (i == 2000 + seed) {
+                result.append((ERROR_LINE + "\n").repeat(3000));
+            }
+            result.append(lines[i]).append(i + 1 < lines.length ? "\n" : "");
+        }
+        return result.toString();
+    }
+
+    /** The "Line N:" headers, which show that every line's output is there and in order. */
+    private static String lines(String output) {
+        StringBuilder headers = new StringBuilder();
+        for (String line : output.split("\n")) {
+            if (line.startsWith("Line ")) {
+                headers.append(line).append('\n');
+            }
+        }
+        return headers.toString();
+    }
+
+    private static String compileStream(String program, int level) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Compiler compiler = new Compiler(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        compiler.passes().selectLevel(level);
+        compiler.compileStream(Channels.newChannel(new ByteArrayInputStream(program.getBytes(StandardCharsets.UTF_8))));
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    private static String compileParallel(String program, int level) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Compiler compiler = new Compiler(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        compiler.passes().selectLevel(level);
+        compiler.compileFullProgramParallel(ByteBuffer.wrap(program.getBytes(StandardCharsets.UTF_8)));
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+}
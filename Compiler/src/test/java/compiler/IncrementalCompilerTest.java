@@ -0,0 +1,105 @@
+package compiler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class IncrementalCompilerTest {
+
+    private static final String[] PROGRAM = {
+        "BEGIN INTEGER A, B, C, E, M, N, G, H, I, a, c",
+        "INPUT A, B, C",
+        "LET B = A */ M",
+        "LET G = a + c",
+        "temp = <s%**h - j / w +d +*$&;",
+        "M = A/B+C",
+        "N = G/H-I+a*B/c",
+        "WRITE M",
+        "WRITEE F;",
+        "END"
+    };
+
+    /** Lines edits are made of, besides those of {@link #PROGRAM}. */
+    private static final String[] EXTRA_LINES = {
+        "INPUT G, H, I",
+        "LET a = B * C",
+        "c = M - A",
+        "WRITE N, G",
+        "BEGIN INTEGER X, A",
+        "X = A + X",
+        "WRITE X;"
+    };
+
+    @Test
+    void randomEditsMatchAFullCompile() {
+        String[] pool = concat(PROGRAM, EXTRA_LINES);
+        for (long seed = 1; seed <= 20; seed++) {
+            Random random = new Random(seed);
+            List<String> program = new ArrayList<>(Arrays.asList(PROGRAM));
+            IncrementalCompiler incremental = new IncrementalCompiler(PROGRAM);
+            for (int edit = 1; edit <= 100; edit++) {
+                int from = random.nextInt(program.size() + 1);
+                int to = from + random.nextInt(Math.min(3, program.size() - from) + 1);
+                // never leave the program empty
+                int count = random.nextInt(4);
+                String[] replacement = new String[to - from == program.size() ? Math.max(1, count) : count];
+                for (int i = 0; i < replacement.length; i++) {
+                    String line = pool[random.nextInt(pool.length)];
+                    replacement[i] = random.nextBoolean() ? line : line.substring(0, 1 + random.nextInt(line.length()));
+                }
+                program.subList(from, to).clear();
+                program.addAll(from, Arrays.asList(replacement));
+                incremental.replaceLines(from, to, replacement);
+                assertEquals(fullCompileDiagnostics(program), incremental.diagnostics(), "seed " + seed + ", edit " + edit);
+            }
+        }
+    }
+
+    @Test
+    void setLineMatchesAFullCompile() {
+        IncrementalCompiler incremental = new IncrementalCompiler(PROGRAM);
+        List<String> program = new ArrayList<>(Arrays.asList(PROGRAM));
+        String[] edits = {"LET M = A + B", "BEGIN INTEGER A, B, C", "INPUT M", "WRITE M, c"};
+        for (int index = 0; index < program.size(); index++) {
+            for (String edit : edits) {
+                program.set(index, edit);
+                incremental.setLine(index, edit);
+                assertEquals(fullCompileDiagnostics(program), incremental.diagnostics(), "line " + index + ": " + edit);
+            }
+        }
+    }
+
+    @Test
+    void editKeepingDefinitionsRechecksOnlyThatLine() {
+        IncrementalCompiler incremental = new IncrementalCompiler(PROGRAM);
+        incremental.setLine(5, "M = A*B-C");
+        assertEquals(1, incremental.recheckedLines());
+        incremental.setLine(7, "WRITE M, A");
+        assertEquals(1, incremental.recheckedLines());
+    }
+
+    /** The error lines {@link Compiler} prints for the whole program. */
+    private static List<String> fullCompileDiagnostics(List<String> program) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Compiler compiler = new Compiler(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        compiler.compileFullProgram(ByteBuffer.wrap(String.join("\n", program).getBytes(StandardCharsets.UTF_8)));
+        return bytes.toString(StandardCharsets.UTF_8).lines()
+                .filter(line -> line.contains(" Error at line "))
+                .collect(Collectors.toList());
+    }
+
+    private static String[] concat(String[] first, String[] second) {
+        String[] all = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, all, first.length, second.length);
+        return all;
+    }
+}
@@ -0,0 +1,148 @@
+package compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Random programs, and an interpreter for the code the compiler generates
+ * for them, so optimized and unoptimized code can be compared by the values
+ * they write rather than by their text.
+ */
+final class TestPrograms {
+
+    /**
+     * Arithmetic is modulo this prime, so every division but by 0 has a
+     * result; dividing by 0 gives the dividend. Nothing is folded at compile
+     * time, so any fixed result will do, and this one keeps the values written
+     * from collapsing to one constant.
+     */
+    private static final long P = 1_000_003;
+    /** Value of a variable never assigned, and of anything computed from it. */
+    static final long UNASSIGNED = -1;
+
+    private static final Pattern CODE = Pattern.compile("Code Generation for line \\d+: (.*)");
+
+    private TestPrograms() {
+    }
+
+    /**
+     * A program that declares and reads {@code variables} variables, then has
+     * {@code statements} random INPUT, WRITE, LET and assignment statements
+     * with expressions up to four levels deep, and writes every variable.
+     * Half of the innermost operations come from a few per program, with
+     * their operands either way round, so there are values to reuse.
+     */
+    static String random(long seed, int statements, int variables) {
+        Random random = new Random(seed);
+        String[] names = new String[variables];
+        for (int i = 0; i < variables; i++) {
+            names[i] = String.valueOf("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".charAt(i));
+        }
+        String[][] shared = new String[4][];
+        for (int i = 0; i < shared.length; i++) {
+            shared[i] = new String[] {pick(random, names), String.valueOf("+-*/".charAt(random.nextInt(4))), pick(random, names)};
+        }
+        StringBuilder program = new StringBuilder();
+        program.append("BEGIN INTEGER ").append(String.join(", ", names)).append('\n');
+        program.append("INPUT ").append(String.join(", ", names)).append('\n');
+        for (int i = 0; i < statements; i++) {
+            double kind = random.nextDouble();
+            if (kind < 0.1) {
+                program.append("INPUT ").append(pick(random, names));
+            } else if (kind < 0.25) {
+                program.append("WRITE ").append(pick(random, names)).append(", ").append(pick(random, names));
+            } else if (kind < 0.3) {
+                program.append("LET ").append(pick(random, names)).append(" = ").append(expression(random, names, shared, 1));
+            } else {
+                program.append(pick(random, names)).append(" = ").append(expression(random, names, shared, 1 + random.nextInt(4)));
+            }
+            program.append('\n');
+        }
+        program.append("WRITE ").append(String.join(", ", names)).append('\n');
+        return program.append("END\n").toString();
+    }
+
+    private static String expression(Random random, String[] names, String[][] shared, int depth) {
+        if (depth == 0 || random.nextDouble() < 0.3) {
+            return pick(random, names);
+        }
+        if (depth == 1 && random.nextBoolean()) {
+            String[] operation = shared[random.nextInt(shared.length)];
+            return random.nextBoolean() ? operation[0] + operation[1] + operation[2] : operation[2] + operation[1] + operation[0];
+        }
+        return expression(random, names, shared, depth - 1) + "+-*/".charAt(random.nextInt(4))
+                + expression(random, names, shared, depth - 1);
+    }
+
+    private static String pick(Random random, String[] names) {
+        return names[random.nextInt(names.length)];
+    }
+
+    /** Everything the compiler prints for {@code program} at optimization level {@code level}. */
+    static String compile(String program, int level) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Compiler compiler = new Compiler(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        compiler.passes().selectLevel(level);
+        compiler.compileFullProgram(ByteBuffer.wrap(program.getBytes(StandardCharsets.UTF_8)));
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Runs the "Code Generation" lines of compiler output in order, with
+     * temporaries and variables in one set of registers, and returns the
+     * values written. The n-th value read by INPUT is {@code 3 + 7n}.
+     */
+    static List<Long> run(String output) {
+        Map<String, Long> registers = new HashMap<>();
+        List<Long> written = new ArrayList<>();
+        long input = 3;
+        for (String line : output.split("\n")) {
+            Matcher code = CODE.matcher(line);
+            if (!code.matches()) {
+                continue;
+            }
+            for (String instruction : code.group(1).split("; ")) {
+                if (instruction.startsWith("INPUT ")) {
+                    registers.put(instruction.substring(6), input);
+                    input += 7;
+                } else if (instruction.startsWith("WRITE ")) {
+                    written.add(registers.getOrDefault(instruction.substring(6), UNASSIGNED));
+                } else {
+                    String[] sides = instruction.split(" = ");
+                    String[] operands = sides[1].split(" ");
+                    long left = registers.getOrDefault(operands[0], UNASSIGNED);
+                    registers.put(sides[0], operands.length == 1 ? left
+                            : apply(left, operands[1].charAt(0), registers.getOrDefault(operands[2], UNASSIGNED)));
+                }
+            }
+        }
+        return written;
+    }
+
+    private static long apply(long left, char operator, long right) {
+        if (left == UNASSIGNED || right == UNASSIGNED) {
+            return UNASSIGNED;
+        }
+        switch (operator) {
+            case '+':
+                return (left + right) % P;
+            case '-':
+                return Math.floorMod(left - right, P);
+            case '*':
+                return left * right % P;
+            default:
+                return right == 0 ? left
+                        : left * BigInteger.valueOf(right).modInverse(BigInteger.valueOf(P)).longValue() % P;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package compiler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class ValueNumberingTest {
+
+    private static final String DECLARE = "BEGIN INTEGER A, B, C, G, M, N\nINPUT A, B, C\n";
+
+    @Test
+    void ssaNumbersEveryAssignment() {
+        String output = TestPrograms.compile(DECLARE + "A = A + B\nA = A * A\nWRITE A\nEND\n", 1);
+        assertEquals("A_2 = A_1 + B_1", optimized(output, 3));
+        assertEquals("A_3 = A_2 * A_2", optimized(output, 4));
+        assertEquals("WRITE A_3", optimized(output, 5));
+    }
+
+    @Test
+    void repeatedOperationWithinAStatementIsComputedOnce() {
+        String output = TestPrograms.compile(DECLARE + "M = A*B + B*A\nWRITE M\nEND\n", 1);
+        assertEquals("t1 = A_1 * B_1; M_1 = t1 + t1", optimized(output, 3));
+    }
+
+    @Test
+    void operationHeldByAVariableIsCopied() {
+        String output = TestPrograms.compile(DECLARE + "M = A + B\nN = B + A\nWRITE M, N\nEND\n", 1);
+        assertEquals("N_1 = M_1", optimized(output, 4));
+    }
+
+    @Test
+    void onlyAdditionAndMultiplicationCommute() {
+        String output = TestPrograms.compile(DECLARE + "M = A - B\nN = B - A\nG = B / A\nWRITE M, N, G\nEND\n", 1);
+        assertEquals("N_1 = B_1 - A_1", optimized(output, 4));
+        assertEquals("G_1 = B_1 / A_1", optimized(output, 5));
+    }
+
+    @Test
+    void assignmentInBetweenInvalidatesTheHolder() {
+        String output = TestPrograms.compile(DECLARE + "M = A + B\nM = C\nN = A + B\nA = C\nG = A + B\n"
+                + "WRITE M, N, G\nEND\n", 1);
+        assertEquals("N_1 = A_1 + B_1", optimized(output, 5));
+        assertEquals("G_1 = A_2 + B_1", optimized(output, 7));
+    }
+
+    @Test
+    void temporaryWhoseUseWasReplacedIsRemoved() {
+        String output = TestPrograms.compile(DECLARE + "M = A/B+C\nG = A/B+C\nWRITE M, G\nEND\n", 1);
+        assertEquals("t1 = A_1 / B_1; M_1 = t1 + C_1", optimized(output, 3));
+        assertEquals("G_1 = M_1", optimized(output, 4));
+    }
+
+    @Test
+    void optimizedCodeWritesWhatUnoptimizedCodeWrites() {
+        for (long seed = 1; seed <= 30; seed++) {
+            String program = TestPrograms.random(seed, 300, 12);
+            String unoptimized = TestPrograms.compile(program, 0);
+            assertEquals(TestPrograms.run(unoptimized), TestPrograms.run(TestPrograms.compile(program, 1)),
+                    "-O1, seed " + seed);
+            assertEquals(TestPrograms.run(unoptimized), TestPrograms.run(TestPrograms.compile(program, 2)),
+                    "-O2, seed " + seed);
+        }
+    }
+
+    /** The optimized code printed for line {@code lineNumber}. */
+    static String optimized(String output, int lineNumber) {
+        String prefix = "Optimization for line " + lineNumber + ": ";
+        for (String line : output.split("\n")) {
+            if (line.startsWith(prefix)) {
+                return line.substring(prefix.length());
+            }
+        }
+        throw new AssertionError("no code for line " + lineNumber + " in:\n" + output);
+    }
+}